@@ -0,0 +1,51 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks once per thread count with the gc profiler attached, accepts the usual jmh
+ * command line options, the thread counts are swept unless given by {@code -t}, e.g.
+ * <pre>
+ *     java -jar target/benchmarks.jar GetById -p variant=cached
+ * </pre>
+ * results are written as json into {@code jmh-result-t<threads>.json} of the working directory
+ */
+public class BenchmarkRunner {
+    private static final int[] THREADS = {1, 4, 8};
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        int[] threads = cmd.getThreads().hasValue() ? new int[] {cmd.getThreads().get()} : THREADS;
+        for (int t : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(cmd)
+                .threads(t)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result-t" + t + ".json");
+            new Runner(options.build()).run();
+        }
+    }
+}
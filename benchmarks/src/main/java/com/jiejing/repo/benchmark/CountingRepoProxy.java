@@ -0,0 +1,57 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.jiejing.repo.IRepoProxy;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * the proxy only counting the events, keeps the cost of the hooks out of the measurement
+ */
+public class CountingRepoProxy implements IRepoProxy {
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+
+    @Override
+    public <T> void preInsert(Class<T> entityClass, String schema, String table, Iterable<T> entities) {
+        entities.forEach(e -> inserted.increment());
+    }
+
+    @Override
+    public <T> void preDelete(Class<T> entityClass, String schema, String table, Iterable<T> entities) {
+        entities.forEach(e -> deleted.increment());
+    }
+
+    @Override
+    public <T> void preUpdate(Class<T> entityClass, String schema, String table, Iterable<T> oldEntities,
+        Iterable<T> newEntities, Set<String> modifiedFields) {
+        newEntities.forEach(e -> updated.increment());
+    }
+
+    public long inserted() {
+        return inserted.sum();
+    }
+
+    public long deleted() {
+        return deleted.sum();
+    }
+
+    public long updated() {
+        return updated.sum();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * deletion of contiguous ids notifying the proxy, the deleted entities are put back
+ * directly into the store afterwards so the cost of the restore is included
+ */
+public class DeleteBenchmark extends RepoBenchmarkSupport {
+    @Param({"plain", "proxied", "async_proxied"})
+    public String variant;
+
+    @Param({"1", "10", "100", "1000"})
+    public int batchSize;
+
+    @Override
+    protected String variant() {
+        return variant;
+    }
+
+    @Benchmark
+    public Iterable<Long> deleteByIds() {
+        List<Long> ids = rangeIds(batchSize);
+        Iterable<Long> deleted = service.deleteByIds(ids);
+        List<Entity> restored = Lists.newArrayListWithCapacity(ids.size());
+        for (Long id : ids) {
+            restored.add(seeds[id.intValue()]);
+        }
+        service.store().restore(restored);
+        return deleted;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import lombok.Data;
+
+/**
+ * the entity of the benchmark fixture
+ */
+@Data
+public class Entity {
+    private Long id;
+    private String name;
+    private Integer age;
+    private Long version;
+    private String remark;
+
+    public static Entity of(long id) {
+        Entity entity = new Entity();
+        entity.setId(id);
+        entity.setName("name-" + id);
+        entity.setAge((int) (id % 100));
+        entity.setVersion(0L);
+        entity.setRemark("remark-" + id);
+        return entity;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.jiejing.repo.IQuery;
+import lombok.Data;
+
+/**
+ * the query of the benchmark fixture, matches entities with age in [minAge, maxAge]
+ */
+@Data
+public class EntityQuery implements IQuery<Entity> {
+    private Integer minAge;
+    private Integer maxAge;
+
+    public static EntityQuery ageBetween(int minAge, int maxAge) {
+        EntityQuery query = new EntityQuery();
+        query.setMinAge(minAge);
+        query.setMaxAge(maxAge);
+        return query;
+    }
+
+    public boolean matches(Entity entity) {
+        Integer age = entity.getAge();
+        return null != age && (null == minAge || age >= minAge) && (null == maxAge || age <= maxAge);
+    }
+}
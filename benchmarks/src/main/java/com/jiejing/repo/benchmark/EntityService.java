@@ -0,0 +1,91 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.jiejing.repo.RepoConfig;
+import com.jiejing.repo.RepoService;
+import com.jiejing.repo.Repository;
+import com.jiejing.repo.proxy.OverflowPolicy;
+import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+
+/**
+ * the service under benchmark, the nested subclasses differ in the configuration only
+ */
+public class EntityService extends RepoService<Long, Entity, EntityQuery> {
+    private final InMemoryRepository store = new InMemoryRepository();
+
+    public InMemoryRepository store() {
+        return store;
+    }
+
+    @Override
+    protected Repository<Long, Entity> initInnerRepository() {
+        return store;
+    }
+
+    @Override
+    protected Iterable<Entity> findByQuery(EntityQuery query, Sort sort, long offset, long limit) {
+        return store.find(query, offset, limit);
+    }
+
+    @Override
+    protected Iterable<Entity> findByQueryAfterId(EntityQuery query, Long lastId, long limit) {
+        return store.findAfter(query, lastId, limit);
+    }
+
+    @Override
+    protected boolean keysetSupported() {
+        return true;
+    }
+
+    @Override
+    protected Object saveIgnoreInternal(Iterable<Entity> entities) {
+        return store.insertIgnore(entities);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Iterable<Entity> parseBulk(Iterable<Entity> toSave, Object bulk) {
+        return (List<Entity>) bulk;
+    }
+
+    public Page<Entity> page(EntityQuery query, int pageNo, int pageSize) {
+        return findByQueryPage(query, pageNo, pageSize);
+    }
+
+    @RepoConfig(schema = "bench", table = "plain")
+    public static class Plain extends EntityService {
+    }
+
+    @RepoConfig(schema = "bench", table = "cached", useCache = true, cacheMaxSize = 1000000L)
+    public static class Cached extends EntityService {
+    }
+
+    @RepoConfig(schema = "bench", table = "concurrent_count", concurrentCount = true)
+    public static class ConcurrentCount extends EntityService {
+    }
+
+    @RepoConfig(schema = "bench", table = "proxied", useProxy = true)
+    public static class Proxied extends EntityService {
+    }
+
+    @RepoConfig(schema = "bench", table = "async_proxied", useProxy = true, asyncProxy = true,
+        asyncProxyOverflow = OverflowPolicy.CALLER_RUNS)
+    public static class AsyncProxied extends EntityService {
+    }
+}
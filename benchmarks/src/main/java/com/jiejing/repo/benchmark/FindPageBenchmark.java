@@ -0,0 +1,44 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.springframework.data.domain.Page;
+
+/**
+ * paged query matching half of the entities, counting sequentially or concurrently with the fetch
+ */
+public class FindPageBenchmark extends RepoBenchmarkSupport {
+    private static final EntityQuery QUERY = EntityQuery.ageBetween(0, 49);
+
+    @Param({"plain", "concurrent_count"})
+    public String variant;
+
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+
+    @Override
+    protected String variant() {
+        return variant;
+    }
+
+    @Benchmark
+    public Page<Entity> findByQueryPage() {
+        return service.page(QUERY, ThreadLocalRandom.current().nextInt(10), pageSize);
+    }
+}
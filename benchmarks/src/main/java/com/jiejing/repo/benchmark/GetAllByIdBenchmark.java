@@ -0,0 +1,40 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * multiple entities lookup by random ids, with and without the entity cache
+ */
+public class GetAllByIdBenchmark extends RepoBenchmarkSupport {
+    @Param({"plain", "cached"})
+    public String variant;
+
+    @Param({"1", "10", "100", "1000"})
+    public int batchSize;
+
+    @Override
+    protected String variant() {
+        return variant;
+    }
+
+    @Benchmark
+    public Iterable<Entity> getAllById() {
+        return service.getAllById(randomIds(batchSize));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.google.common.collect.Lists;
+import com.jiejing.repo.Repository;
+import com.jiejing.repo.accessor.EntityAccessor;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * the in-memory repository backed by a sorted concurrent map, entities are stored and returned by reference
+ * so that the measurement is dominated by the service rather than the storage
+ */
+public class InMemoryRepository implements Repository<Long, Entity> {
+    private static final EntityAccessor<Entity> ACCESSOR = EntityAccessor.of(Entity.class);
+
+    private final ConcurrentNavigableMap<Long, Entity> rows = new ConcurrentSkipListMap<>();
+
+    /**
+     * put the entities directly, bypass the repository semantics, used to reset the fixture
+     * @param entities the entities to put
+     */
+    public void restore(Collection<Entity> entities) {
+        for (Entity entity : entities) {
+            rows.put(entity.getId(), entity);
+        }
+    }
+
+    /**
+     * remove all the entities
+     */
+    public void clear() {
+        rows.clear();
+    }
+
+    /**
+     * insert the entities not existed
+     * @param entities the entities to insert
+     * @return the inserted entities
+     */
+    public List<Entity> insertIgnore(Iterable<Entity> entities) {
+        List<Entity> inserted = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (null == rows.putIfAbsent(entity.getId(), entity)) {
+                inserted.add(entity);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * find the entities match the query ordered by id
+     * @param query the query
+     * @param offset the count of matched entities to skip
+     * @param limit the max count to return, non positive for unlimited
+     * @return the found entities
+     */
+    public List<Entity> find(EntityQuery query, long offset, long limit) {
+        return rows.values().stream().filter(query::matches).skip(offset)
+            .limit(limit > 0 ? limit : Long.MAX_VALUE).collect(Collectors.toList());
+    }
+
+    /**
+     * find the entities match the query with id greater than the given one ordered by id
+     * @param query the query
+     * @param lastId the last id, null to start from the first entity
+     * @param limit the max count to return
+     * @return the found entities
+     */
+    public List<Entity> findAfter(EntityQuery query, Long lastId, long limit) {
+        ConcurrentNavigableMap<Long, Entity> tail = null == lastId ? rows : rows.tailMap(lastId, false);
+        return tail.values().stream().filter(query::matches).limit(limit).collect(Collectors.toList());
+    }
+
+    @Override
+    public Long getId(Entity entity) {
+        return entity.getId();
+    }
+
+    @Override
+    public void setId(Entity entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    public <S extends Entity> S insert(S entity) {
+        rows.put(entity.getId(), entity);
+        return entity;
+    }
+
+    @Override
+    public <S extends Entity> Iterable<S> insertAll(Iterable<S> entities) {
+        for (S entity : entities) {
+            rows.put(entity.getId(), entity);
+        }
+        return entities;
+    }
+
+    @Override
+    public Entity updateById(Entity entity) {
+        Entity stored = rows.get(entity.getId());
+        if (null != stored) {
+            ACCESSOR.copyNonNullProperties(entity, stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public Iterable<Entity> updateByIds(Iterable<Long> ids, Entity entity) {
+        List<Entity> updated = Lists.newArrayList();
+        for (Long id : ids) {
+            Entity stored = rows.get(id);
+            if (null != stored) {
+                ACCESSOR.copyNonNullProperties(entity, stored);
+                updated.add(stored);
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<Entity> findById(Long id) {
+        return Optional.ofNullable(rows.get(id));
+    }
+
+    @Override
+    public Iterable<Entity> findAllById(Iterable<Long> ids) {
+        List<Entity> found = Lists.newArrayList();
+        for (Long id : ids) {
+            Entity entity = rows.get(id);
+            if (null != entity) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return rows.size();
+    }
+
+    @Override
+    public boolean dropById(Long id) {
+        return null != rows.remove(id);
+    }
+
+    @Override
+    public Iterable<Long> dropByIds(Iterable<Long> ids) {
+        List<Long> dropped = Lists.newArrayList();
+        for (Long id : ids) {
+            if (null != rows.remove(id)) {
+                dropped.add(id);
+            }
+        }
+        return dropped;
+    }
+
+    @Override
+    public long dropByCond(Object cond) {
+        List<Long> ids = find((EntityQuery) cond, 0, 0).stream().map(Entity::getId).collect(Collectors.toList());
+        return Lists.newArrayList(dropByIds(ids)).size();
+    }
+
+    @Override
+    public long updateByCond(Object cond, Entity entity) {
+        List<Long> ids = find((EntityQuery) cond, 0, 0).stream().map(Entity::getId).collect(Collectors.toList());
+        return Lists.newArrayList(updateByIds(ids, entity)).size();
+    }
+
+    @Override
+    public Iterable<Entity> findByCond(Object cond) {
+        return find((EntityQuery) cond, 0, 0);
+    }
+
+    @Override
+    public long countByCond(Object cond) {
+        EntityQuery query = (EntityQuery) cond;
+        return rows.values().stream().filter(query::matches).count();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * insertion of new entities, and save-ignore of batches with half of the entities already existed,
+ * the store is reset before each iteration to bound its growth
+ */
+public class InsertBenchmark extends RepoBenchmarkSupport {
+    @Param({"plain", "proxied", "async_proxied"})
+    public String variant;
+
+    @Param({"1", "10", "100", "1000"})
+    public int batchSize;
+
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Override
+    protected String variant() {
+        return variant;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStore() {
+        reset();
+        nextId.set(rows);
+    }
+
+    @Benchmark
+    public Iterable<Entity> insertAll() {
+        long start = nextId.getAndAdd(batchSize);
+        List<Entity> entities = Lists.newArrayListWithCapacity(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            entities.add(Entity.of(start + i));
+        }
+        return service.insertAll(entities);
+    }
+
+    @Benchmark
+    public Object saveIgnore() {
+        int existed = batchSize / 2;
+        long start = nextId.getAndAdd(batchSize - existed);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Entity> entities = Lists.newArrayListWithCapacity(batchSize);
+        for (int i = 0; i < existed; i++) {
+            entities.add(Entity.of(random.nextLong(rows)));
+        }
+        for (int i = existed; i < batchSize; i++) {
+            entities.add(Entity.of(start + i - existed));
+        }
+        return service.saveIgnore(entities);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * the shared fixture of the benchmarks, starts a spring context holding every service variant
+ * and fills the store of the measured variant with {@link #rows} entities of id [0, rows)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public abstract class RepoBenchmarkSupport {
+    private static final Map<String, Class<? extends EntityService>> VARIANTS =
+        ImmutableMap.<String, Class<? extends EntityService>>builder()
+            .put("plain", EntityService.Plain.class)
+            .put("cached", EntityService.Cached.class)
+            .put("concurrent_count", EntityService.ConcurrentCount.class)
+            .put("proxied", EntityService.Proxied.class)
+            .put("async_proxied", EntityService.AsyncProxied.class)
+            .build();
+
+    @Param("100000")
+    public int rows;
+
+    protected AnnotationConfigApplicationContext context;
+
+    protected EntityService service;
+
+    /**
+     * the stored entities indexed by id, used to restore the store without allocation
+     */
+    protected Entity[] seeds;
+
+    /**
+     * the name of the service variant to measure
+     */
+    protected abstract String variant();
+
+    @Setup(Level.Trial)
+    public void setUpContext() {
+        Class<? extends EntityService> serviceType = VARIANTS.get(variant());
+        if (null == serviceType) {
+            throw new IllegalArgumentException("unknown service variant: " + variant());
+        }
+        context = new AnnotationConfigApplicationContext();
+        context.register(CountingRepoProxy.class);
+        context.register(VARIANTS.values().toArray(new Class<?>[0]));
+        context.refresh();
+        service = context.getBean(serviceType);
+        reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownContext() {
+        if (null != context) {
+            context.close();
+        }
+    }
+
+    /**
+     * refill the store with fresh entities
+     */
+    protected void reset() {
+        seeds = new Entity[rows];
+        for (int i = 0; i < rows; i++) {
+            seeds[i] = Entity.of(i);
+        }
+        service.store().clear();
+        service.store().restore(Arrays.asList(seeds));
+    }
+
+    protected long randomId() {
+        return ThreadLocalRandom.current().nextLong(rows);
+    }
+
+    /**
+     * the random ids of the given count, not necessarily distinct
+     */
+    protected List<Long> randomIds(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> ids = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(random.nextLong(rows));
+        }
+        return ids;
+    }
+
+    /**
+     * the contiguous ids of the given count from a random start
+     */
+    protected List<Long> rangeIds(int count) {
+        long start = ThreadLocalRandom.current().nextLong(Math.max(1, rows - count));
+        List<Long> ids = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(start + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.processor;
+
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * The readable property of an entity resolved at build time
+ */
+final class EntityProperty {
+
+    /**
+     * the property name, resolved the same way as java beans introspection
+     */
+    final String name;
+
+    /**
+     * the property type as a member of the entity
+     */
+    final TypeMirror type;
+
+    final String getter;
+
+    /**
+     * the setter name, null if read-only
+     */
+    String setter;
+
+    /**
+     * whether backed by a non-static field declared in the entity class
+     */
+    boolean declared;
+
+    EntityProperty(String name, TypeMirror type, String getter) {
+        this.name = name;
+        this.type = type;
+        this.getter = getter;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.processor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The scanner resolving the readable properties of an entity the same way as spring bean wrappers
+ * <p>
+ * Accessors generated by lombok may not be visible yet when this processor runs, so fields of classes annotated
+ * with {@code @Data}, {@code @Value}, {@code @Getter} or {@code @Setter} are treated as if their accessors were
+ * declared.
+ */
+final class EntityScanner {
+
+    private static final String LOMBOK = "lombok.";
+
+    private final Elements elements;
+
+    private final Types types;
+
+    EntityScanner(Elements elements, Types types) {
+        this.elements = elements;
+        this.types = types;
+    }
+
+    /**
+     * scan the readable properties of the entity
+     * @param entity the entity class
+     * @return the properties sorted by name
+     */
+    List<EntityProperty> scan(TypeElement entity) {
+        DeclaredType entityType = (DeclaredType) entity.asType();
+        Map<String, EntityProperty> properties = new TreeMap<>();
+        Map<String, List<ExecutableElement>> setters = new HashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(entity))) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+                continue;
+            }
+            String name = method.getSimpleName().toString();
+            ExecutableType member = (ExecutableType) types.asMemberOf(entityType, method);
+            TypeMirror returnType = member.getReturnType();
+            int params = member.getParameterTypes().size();
+            if (params == 0 && name.length() > 3 && name.startsWith("get") && returnType.getKind() != TypeKind.VOID) {
+                properties.putIfAbsent(propertyName(name, 3),
+                    new EntityProperty(propertyName(name, 3), returnType, name));
+            } else if (params == 0 && name.length() > 2 && name.startsWith("is")
+                && returnType.getKind() == TypeKind.BOOLEAN) {
+                // the is-getter is preferred to the get-getter of boolean properties
+                properties.put(propertyName(name, 2), new EntityProperty(propertyName(name, 2), returnType, name));
+            } else if (params == 1 && name.length() > 3 && name.startsWith("set")) {
+                setters.computeIfAbsent(propertyName(name, 3), key -> new ArrayList<>()).add(method);
+            }
+        }
+        for (EntityProperty property : properties.values()) {
+            for (ExecutableElement setter : setters.getOrDefault(property.name, new ArrayList<>())) {
+                ExecutableType member = (ExecutableType) types.asMemberOf(entityType, setter);
+                TypeMirror paramType = member.getParameterTypes().get(0);
+                if (types.isSameType(types.erasure(paramType), types.erasure(property.type))) {
+                    property.setter = setter.getSimpleName().toString();
+                }
+            }
+        }
+        scanLombok(entity, entityType, properties);
+
+        for (VariableElement field : ElementFilter.fieldsIn(entity.getEnclosedElements())) {
+            EntityProperty property = properties.get(field.getSimpleName().toString());
+            if (null != property && !field.getModifiers().contains(Modifier.STATIC)) {
+                property.declared = true;
+            }
+        }
+        return new ArrayList<>(properties.values());
+    }
+
+    /**
+     * whether the entity can be instantiated by {@code new} from generated code
+     */
+    boolean hasPublicNoArgConstructor(TypeElement entity) {
+        for (String annotation : new String[] {"AllArgsConstructor", "RequiredArgsConstructor", "Builder", "Data",
+            "Value"}) {
+            if (null != lombok(entity, annotation) && null == lombok(entity, "NoArgsConstructor")) {
+                return false;
+            }
+        }
+        if (null != lombok(entity, "NoArgsConstructor")) {
+            return isPublic(lombok(entity, "NoArgsConstructor"), "access");
+        }
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(entity.getEnclosedElements())) {
+            if (ctor.getParameters().isEmpty() && ctor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scanLombok(TypeElement entity, DeclaredType entityType, Map<String, EntityProperty> properties) {
+        for (TypeElement type = entity; null != type && !type.getQualifiedName().contentEquals("java.lang.Object");
+             type = superclass(type)) {
+            boolean data = null != lombok(type, "Data");
+            boolean value = null != lombok(type, "Value");
+            AnnotationMirror classGetter = lombok(type, "Getter");
+            AnnotationMirror classSetter = lombok(type, "Setter");
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                AnnotationMirror fieldGetter = lombok(field, "Getter");
+                AnnotationMirror fieldSetter = lombok(field, "Setter");
+                boolean getter = null != fieldGetter ? isPublic(fieldGetter, "value")
+                    : data || value || (null != classGetter && isPublic(classGetter, "value"));
+                boolean setter = !value && !field.getModifiers().contains(Modifier.FINAL)
+                    && (null != fieldSetter ? isPublic(fieldSetter, "value")
+                    : data || (null != classSetter && isPublic(classSetter, "value")));
+                if (!getter) {
+                    continue;
+                }
+                TypeMirror fieldType = types.asMemberOf(entityType, field);
+                String fieldName = field.getSimpleName().toString();
+                String suffix = capitalize(fieldName);
+                String getterName = "get" + suffix;
+                if (fieldType.getKind() == TypeKind.BOOLEAN) {
+                    // lombok names the accessors of boolean field isActive as isActive and setActive
+                    boolean prefixed = fieldName.length() > 2 && fieldName.startsWith("is")
+                        && Character.isUpperCase(fieldName.charAt(2));
+                    suffix = prefixed ? fieldName.substring(2) : suffix;
+                    getterName = prefixed ? fieldName : "is" + suffix;
+                }
+                String name = propertyName(getterName, getterName.startsWith("is") ? 2 : 3);
+                EntityProperty property = properties.get(name);
+                if (null == property) {
+                    property = new EntityProperty(name, fieldType, getterName);
+                    properties.put(name, property);
+                }
+                if (setter && null == property.setter && property.getter.equals(getterName)) {
+                    property.setter = "set" + suffix;
+                }
+            }
+        }
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) types.asElement(superclass) : null;
+    }
+
+    private static AnnotationMirror lombok(Element element, String simpleName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            Element type = mirror.getAnnotationType().asElement();
+            if (((TypeElement) type).getQualifiedName().contentEquals(LOMBOK + simpleName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * whether the access level of the lombok annotation is public, the default
+     */
+    private static boolean isPublic(AnnotationMirror mirror, String member) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+            : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(member)) {
+                Object value = entry.getValue().getValue();
+                return value instanceof VariableElement
+                    && ((VariableElement) value).getSimpleName().contentEquals("PUBLIC");
+            }
+        }
+        return true;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * the property name of the accessor, decapitalized the same way as {@code java.beans.Introspector}
+     */
+    private static String propertyName(String accessor, int prefix) {
+        String name = accessor.substring(prefix);
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.processor;
+
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.SimpleAnnotationValueVisitor8;
+import javax.lang.model.util.Types;
+
+/**
+ * The writer of the generated metadata source, an implementation of {@code com.jiejing.repo.meta.RepoMetadata}
+ * with the config values and a typed entity accessor
+ */
+final class MetaSourceWriter {
+
+    private static final String REPO_CONFIG = "com.jiejing.repo.RepoConfig";
+
+    private static final String ENTITY_ACCESSOR = "com.jiejing.repo.accessor.EntityAccessor";
+
+    private final Elements elements;
+
+    private final Types types;
+
+    private final StringBuilder out = new StringBuilder();
+
+    MetaSourceWriter(Elements elements, Types types) {
+        this.elements = elements;
+        this.types = types;
+    }
+
+    /**
+     * write the metadata source
+     * @param packageName the package of the service, empty if unnamed
+     * @param simpleName the simple name of the generated class
+     * @param service the service class
+     * @param idType the id type
+     * @param entity the entity class
+     * @param config the config annotation of the service
+     * @param properties the readable properties of the entity
+     * @param newable whether the entity can be instantiated by {@code new}
+     * @return the source
+     */
+    String write(String packageName, String simpleName, TypeElement service, TypeMirror idType, TypeElement entity,
+        AnnotationMirror config, List<EntityProperty> properties, boolean newable) {
+        String entityName = entity.getQualifiedName().toString();
+        line(0, "// Generated by " + RepoMetaProcessor.class.getName() + " from " + service.getQualifiedName()
+            + ", do not edit");
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+        }
+        line(0, "");
+        line(0, "@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        line(0, "public final class " + simpleName + " implements com.jiejing.repo.meta.RepoMetadata<" + idType + ", "
+            + entityName + "> {");
+        line(0, "");
+        line(1, "private static final " + REPO_CONFIG + " CONFIG = new Config();");
+        line(0, "");
+        line(1, "private static final " + ENTITY_ACCESSOR + "<" + entityName + "> ACCESSOR = new Accessor();");
+        line(0, "");
+        method(1, "java.lang.reflect.Type idType()", "return " + erasure(idType) + ".class;");
+        method(1, "java.lang.reflect.Type entityType()", "return " + entityName + ".class;");
+        method(1, REPO_CONFIG + " config()", "return CONFIG;");
+        method(1, ENTITY_ACCESSOR + "<" + entityName + "> accessor()", "return ACCESSOR;");
+        writeConfig(config);
+        line(0, "");
+        writeAccessor(entityName, properties, newable);
+        line(0, "}");
+        return out.toString();
+    }
+
+    private void writeConfig(AnnotationMirror config) {
+        line(1, "private static final class Config implements " + REPO_CONFIG + " {");
+        line(0, "");
+        method(2, "java.lang.Class<? extends java.lang.annotation.Annotation> annotationType()",
+            "return " + REPO_CONFIG + ".class;");
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+            : elements.getElementValuesWithDefaults(config).entrySet()) {
+            TypeMirror returnType = entry.getKey().getReturnType();
+            method(2, returnType + " " + entry.getKey().getSimpleName() + "()",
+                "return " + literal(entry.getValue(), returnType) + ";");
+        }
+        line(1, "}");
+    }
+
+    private void writeAccessor(String entityName, List<EntityProperty> properties, boolean newable) {
+        line(1, "private static final class Accessor implements " + ENTITY_ACCESSOR + "<" + entityName + "> {");
+        line(0, "");
+        StringBuilder names = new StringBuilder();
+        for (EntityProperty property : properties) {
+            names.append(names.length() > 0 ? ", " : "").append(elements.getConstantExpression(property.name));
+        }
+        line(2, "private static final java.lang.String[] NAMES = {" + names + "};");
+        line(0, "");
+        method(2, entityName + " newInstance()", newable ? "return new " + entityName + "();"
+            : "return " + ENTITY_ACCESSOR + ".of(" + entityName + ".class).newInstance();");
+        method(2, "java.lang.String[] propertyNames()", "return NAMES;");
+
+        open(2, "java.lang.Object getProperty(" + entityName + " entity, java.lang.String name)");
+        line(3, "switch (name) {");
+        for (EntityProperty property : properties) {
+            line(4, "case " + elements.getConstantExpression(property.name) + ":");
+            line(5, "return entity." + property.getter + "();");
+        }
+        line(4, "default:");
+        line(5, "throw new java.lang.IllegalArgumentException(\"Property \" + name + \" of " + entityName
+            + " is not readable\");");
+        line(3, "}");
+        close(2);
+
+        open(2, "void setProperty(" + entityName + " entity, java.lang.String name, java.lang.Object value)");
+        line(3, "switch (name) {");
+        boolean readOnly = false;
+        for (EntityProperty property : properties) {
+            if (null == property.setter) {
+                readOnly = true;
+                continue;
+            }
+            line(4, "case " + elements.getConstantExpression(property.name) + ":");
+            if (property.type.getKind().isPrimitive()) {
+                // null sets the default value of the primitive rather than failing to unbox
+                line(5, "entity." + property.setter + "(null != value ? (" + boxed(property.type) + ") value : "
+                    + defaultValue(property.type) + ");");
+            } else {
+                line(5, "entity." + property.setter + "((" + boxed(property.type) + ") value);");
+            }
+            line(5, "return;");
+        }
+        if (readOnly) {
+            for (EntityProperty property : properties) {
+                if (null == property.setter) {
+                    line(4, "case " + elements.getConstantExpression(property.name) + ":");
+                }
+            }
+            line(5, "throw new java.lang.IllegalArgumentException(\"Property \" + name + \" of " + entityName
+                + " is not writable\");");
+        }
+        line(4, "default:");
+        line(5, "throw new java.lang.IllegalArgumentException(\"Property \" + name + \" of " + entityName
+            + " is not readable\");");
+        line(3, "}");
+        close(2);
+
+        open(2, "java.lang.String[] nullPropertyNames(" + entityName + " entity)");
+        line(3, "java.util.List<java.lang.String> found = new java.util.ArrayList<>();");
+        for (EntityProperty property : properties) {
+            if (!property.type.getKind().isPrimitive()) {
+                line(3, "if (null == entity." + property.getter + "()) {");
+                line(4, "found.add(" + elements.getConstantExpression(property.name) + ");");
+                line(3, "}");
+            }
+        }
+        line(3, "return found.toArray(new java.lang.String[0]);");
+        close(2);
+
+        open(2, "void copyProperties(" + entityName + " source, " + entityName + " target)");
+        for (EntityProperty property : properties) {
+            if (null != property.setter) {
+                line(3, "target." + property.setter + "(source." + property.getter + "());");
+            }
+        }
+        close(2);
+
+        open(2, "void copyNonNullProperties(" + entityName + " source, " + entityName + " target)");
+        for (EntityProperty property : properties) {
+            if (null == property.setter) {
+                continue;
+            }
+            if (property.type.getKind().isPrimitive()) {
+                line(3, "target." + property.setter + "(source." + property.getter + "());");
+            } else {
+                line(3, "if (null != source." + property.getter + "()) {");
+                line(4, "target." + property.setter + "(source." + property.getter + "());");
+                line(3, "}");
+            }
+        }
+        close(2);
+
+        open(2, "java.util.Set<java.lang.String> modifiedFields(" + entityName + " entity, java.lang.Iterable<"
+            + entityName + "> oldEntities)");
+        line(3, "java.util.Set<java.lang.String> modified = new java.util.HashSet<>();");
+        line(3, "java.lang.Object value;");
+        for (EntityProperty property : properties) {
+            if (!property.declared) {
+                continue;
+            }
+            line(3, "value = entity." + property.getter + "();");
+            line(3, "if (null != value) {");
+            line(4, "for (" + entityName + " oldEntity : oldEntities) {");
+            line(5, "if (!value.equals(oldEntity." + property.getter + "())) {");
+            line(6, "modified.add(" + elements.getConstantExpression(property.name) + ");");
+            line(6, "break;");
+            line(5, "}");
+            line(4, "}");
+            line(3, "}");
+        }
+        line(3, "return modified;");
+        close(2);
+        line(1, "}");
+    }
+
+    /**
+     * the source literal of the annotation value
+     */
+    private String literal(AnnotationValue value, TypeMirror type) {
+        return value.accept(new SimpleAnnotationValueVisitor8<String, TypeMirror>() {
+            @Override
+            protected String defaultAction(Object constant, TypeMirror expected) {
+                return elements.getConstantExpression(constant);
+            }
+
+            @Override
+            public String visitType(TypeMirror constant, TypeMirror expected) {
+                return erasure(constant) + ".class";
+            }
+
+            @Override
+            public String visitEnumConstant(VariableElement constant, TypeMirror expected) {
+                TypeElement enumType = (TypeElement) constant.getEnclosingElement();
+                return enumType.getQualifiedName() + "." + constant.getSimpleName();
+            }
+
+            @Override
+            public String visitArray(List<? extends AnnotationValue> values, TypeMirror expected) {
+                TypeMirror component = ((ArrayType) expected).getComponentType();
+                StringBuilder items = new StringBuilder();
+                for (AnnotationValue item : values) {
+                    items.append(items.length() > 0 ? ", " : "").append(item.accept(this, component));
+                }
+                return "new " + erasure(component) + "[] {" + items + "}";
+            }
+
+            @Override
+            public String visitAnnotation(AnnotationMirror constant, TypeMirror expected) {
+                throw new UnsupportedOperationException("Annotation member of type " + expected + " is not supported");
+            }
+        }, type);
+    }
+
+    private String erasure(TypeMirror type) {
+        return types.erasure(type).toString();
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return erasure(type);
+    }
+
+    private static String defaultValue(TypeMirror primitive) {
+        switch (primitive.getKind()) {
+            case BOOLEAN:
+                return "false";
+            case CHAR:
+                return "'\\0'";
+            case BYTE:
+                return "(byte) 0";
+            case SHORT:
+                return "(short) 0";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0F";
+            case DOUBLE:
+                return "0D";
+            default:
+                return "0";
+        }
+    }
+
+    private void method(int indent, String signature, String statement) {
+        open(indent, signature);
+        line(indent + 1, statement);
+        close(indent);
+    }
+
+    private void open(int indent, String signature) {
+        line(indent, "@Override");
+        line(indent, "public " + signature + " {");
+    }
+
+    private void close(int indent) {
+        line(indent, "}");
+        line(0, "");
+    }
+
+    private void line(int indent, String text) {
+        for (int i = 0; i < indent && !text.isEmpty(); i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+    }
+}
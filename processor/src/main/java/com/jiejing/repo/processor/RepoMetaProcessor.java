@@ -0,0 +1,193 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * The processor generating {@code <Service>_RepoMeta} for every concrete service annotated with
+ * {@code @RepoConfig}, so that the service resolves its id and entity types, config and entity accessor without
+ * reflection at startup
+ * <p>
+ * Services whose type arguments are not resolved at the annotated class, or whose entity is not accessible from
+ * the package of the service, are skipped with a warning and fall back to reflection at runtime.
+ */
+@SupportedAnnotationTypes(RepoMetaProcessor.REPO_CONFIG)
+public class RepoMetaProcessor extends AbstractProcessor {
+
+    static final String REPO_CONFIG = "com.jiejing.repo.RepoConfig";
+
+    static final String REPO_SERVICE = "com.jiejing.repo.RepoService";
+
+    /**
+     * the suffix of the generated class name, see {@code com.jiejing.repo.meta.RepoMetadatas}
+     */
+    static final String SUFFIX = "_RepoMeta";
+
+    /**
+     * the services with supertypes not generated yet, retried in the next round
+     */
+    private final Set<String> deferred = new LinkedHashSet<>();
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Elements elements = processingEnv.getElementUtils();
+        List<TypeElement> services = new ArrayList<>();
+        for (String name : deferred) {
+            TypeElement service = elements.getTypeElement(name);
+            if (null != service) {
+                services.add(service);
+            }
+        }
+        deferred.clear();
+        TypeElement annotation = elements.getTypeElement(REPO_CONFIG);
+        if (null != annotation) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+                    services.add((TypeElement) element);
+                }
+            }
+        }
+        for (TypeElement service : services) {
+            if (generated.add(service.getQualifiedName().toString())) {
+                generate(service, roundEnv.processingOver());
+            }
+        }
+        // leave the annotation to other processors
+        return false;
+    }
+
+    private void generate(TypeElement service, boolean lastRound) {
+        Elements elements = processingEnv.getElementUtils();
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror repoService = repoService(service);
+        if (null == repoService || repoService.getKind() == TypeKind.ERROR) {
+            if (null != repoService && !lastRound) {
+                generated.remove(service.getQualifiedName().toString());
+                deferred.add(service.getQualifiedName().toString());
+            } else {
+                warn(service, "is not a resolvable " + REPO_SERVICE);
+            }
+            return;
+        }
+        List<? extends TypeMirror> arguments = ((DeclaredType) repoService).getTypeArguments();
+        if (arguments.size() < 2 || arguments.get(0).getKind() != TypeKind.DECLARED
+            && arguments.get(0).getKind() != TypeKind.ARRAY || arguments.get(1).getKind() != TypeKind.DECLARED) {
+            warn(service, "does not resolve the id and entity types of " + REPO_SERVICE);
+            return;
+        }
+        TypeElement entity = (TypeElement) types.asElement(arguments.get(1));
+        String packageName = elements.getPackageOf(service).getQualifiedName().toString();
+        if (!((DeclaredType) arguments.get(1)).getTypeArguments().isEmpty() || !isAccessible(entity, packageName)) {
+            warn(service, "has an entity type " + arguments.get(1) + " not accessible from the generated class");
+            return;
+        }
+
+        String binaryName = elements.getBinaryName(service).toString();
+        String simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+            .replace('$', '_') + SUFFIX;
+        EntityScanner scanner = new EntityScanner(elements, types);
+        String source = new MetaSourceWriter(elements, types).write(packageName, simpleName, service,
+            arguments.get(0), entity, config(service), scanner.scan(entity), scanner.hasPublicNoArgConstructor(entity));
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, service, entity).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Kind.ERROR, "Cannot write " + qualifiedName + ": " + e, service);
+        }
+    }
+
+    /**
+     * the supertype RepoService as seen from the service with its type arguments substituted, an error type if
+     * some supertype is not resolved yet, or null if not a service
+     */
+    private TypeMirror repoService(TypeElement service) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror current = service.asType();
+        while (current.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) types.asElement(current);
+            if (element.getQualifiedName().contentEquals(REPO_SERVICE)) {
+                return current;
+            }
+            List<? extends TypeMirror> supertypes = types.directSupertypes(current);
+            if (supertypes.isEmpty()) {
+                return null;
+            }
+            current = supertypes.get(0);
+        }
+        return current.getKind() == TypeKind.ERROR ? current : null;
+    }
+
+    private AnnotationMirror config(TypeElement service) {
+        for (AnnotationMirror mirror : service.getAnnotationMirrors()) {
+            Element type = mirror.getAnnotationType().asElement();
+            if (((TypeElement) type).getQualifiedName().contentEquals(REPO_CONFIG)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException(service + " is not annotated with " + REPO_CONFIG);
+    }
+
+    /**
+     * whether the entity and its enclosing classes are accessible from the package
+     */
+    private boolean isAccessible(TypeElement entity, String packageName) {
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(entity).getQualifiedName()
+            .contentEquals(packageName);
+        for (Element type = entity; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            Set<Modifier> modifiers = type.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || !samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void warn(TypeElement service, String reason) {
+        processingEnv.getMessager().printMessage(Kind.WARNING,
+            service.getQualifiedName() + " " + reason + ", skip generating " + SUFFIX + " and fallback to reflection",
+            service);
+    }
+}
@@ -22,4 +22,13 @@ public interface IQuery<T> {
     default boolean isEmpty() {
         return false;
     }
+
+    /**
+     * the stable key of the query, equal queries should return equal keys. Concurrent identical queries with a
+     * key share one execution and its result
+     * @return the key, default to null to execute every query
+     */
+    default Object queryKey() {
+        return null;
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo;
+
+import com.jiejing.repo.utils.LongIds;
+import java.util.List;
+
+/**
+ * The repo service of entities with long ids, the id set operations take and collect primitive arrays
+ * <p>
+ * The ids are passed through the generic operations as lists backed by the arrays and reach a {@link LongRepository}
+ * as arrays again, so no object is allocated per id unless the ids are cached or sent to the proxy one by one. A
+ * generic inner repository is adapted by {@link LongRepository#of}, which boxes the ids on its side.
+ *
+ * @param <T> the entity type
+ * @param <Q> the query type
+ */
+public abstract class LongRepoService<T, Q extends IQuery<T>> extends RepoService<Long, T, Q> {
+
+    private volatile LongRepository<T> longRepository;
+
+    /**
+     * the inner repository as a long repository
+     * @return the inner repository, or the adapter of it
+     */
+    protected LongRepository<T> longRepository() {
+        LongRepository<T> adapted = longRepository;
+        if (null == adapted) {
+            adapted = LongRepository.of(innerRepository);
+            longRepository = adapted;
+        }
+        return adapted;
+    }
+
+    /**
+     * retrieve entities by ids
+     * @param ids the id set
+     * @return found entities
+     */
+    public Iterable<T> getAllById(long... ids) {
+        return getAllById(LongIds.asList(ids));
+    }
+
+    /**
+     * update multiple entities by ids
+     * @param entity the entity holds updates
+     * @param ids the id set
+     * @return updated entities with ids
+     */
+    public Iterable<T> updateByIds(T entity, long... ids) {
+        return updateByIds(entity, ids, batchSize());
+    }
+
+    /**
+     * update multiple entities by ids chunk by chunk
+     * @param entity the entity holds updates
+     * @param ids the id set
+     * @param batchSize the max count of ids per chunk, non positive to update all at once
+     * @return updated entities with ids
+     */
+    public Iterable<T> updateByIds(T entity, long[] ids, int batchSize) {
+        return updateByIds(entity, LongIds.asList(ids), batchSize);
+    }
+
+    /**
+     * delete entities with ids
+     * @param ids the id set
+     * @return deleted id set
+     */
+    public long[] deleteByIds(long... ids) {
+        return deleteByIds(ids, batchSize());
+    }
+
+    /**
+     * delete entities with ids chunk by chunk
+     * @param ids the id set
+     * @param batchSize the max count of ids per chunk, non positive to delete all at once
+     * @return deleted id set
+     */
+    public long[] deleteByIds(long[] ids, int batchSize) {
+        return LongIds.toArray(deleteByIds(LongIds.asList(ids), batchSize));
+    }
+
+    @Override
+    protected List<Long> idsOf(Iterable<T> entities) {
+        return LongIds.asList(LongIds.idsOf(entities, longRepository()::getLongId));
+    }
+}
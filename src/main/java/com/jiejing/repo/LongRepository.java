@@ -0,0 +1,92 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo;
+
+import com.jiejing.repo.utils.LongIds;
+
+/**
+ * The repository of entities with long ids, the id set operations take primitive arrays
+ * <p>
+ * The generic id set operations are adapted to the primitive ones. The id sets created by {@link LongIds#asList}
+ * are copied back to arrays without boxing, so they pass through the wrappers of the generic interface, the
+ * replica and shard routing for example, in primitive form.
+ *
+ * @param <T> the entity type
+ */
+public interface LongRepository<T> extends Repository<Long, T> {
+
+    /**
+     * Adapt a generic repository with long ids, the ids are boxed per call
+     * @param repository the generic repository
+     * @param <T> the entity type
+     * @return the repository itself if it is a long repository already
+     */
+    static <T> LongRepository<T> of(Repository<Long, T> repository) {
+        if (repository instanceof LongRepository) {
+            return (LongRepository<T>) repository;
+        }
+        return new LongRepositoryAdapter<>(repository);
+    }
+
+    /**
+     * Get the id of the given entity
+     * @param entity the entity
+     * @return the id of the entity
+     */
+    long getLongId(T entity);
+
+    /**
+     * Find the entities by ids
+     * @param ids the id set
+     * @return found entities
+     */
+    Iterable<T> findAllById(long[] ids);
+
+    /**
+     * Update multiple entities referred by the ids with the same entity with fields to update filled.
+     * @param ids the id set to update with the entity
+     * @param entity the entity holds the updates
+     * @return the updated entities
+     */
+    Iterable<T> updateByIds(long[] ids, T entity);
+
+    /**
+     * Delete multiple entities by given ids.
+     * @param ids the id set to delete
+     * @return deleted ids
+     */
+    long[] dropByIds(long[] ids);
+
+    @Override
+    default Long getId(T entity) {
+        return getLongId(entity);
+    }
+
+    @Override
+    default Iterable<T> findAllById(Iterable<Long> ids) {
+        return findAllById(LongIds.toArray(ids));
+    }
+
+    @Override
+    default Iterable<T> updateByIds(Iterable<Long> ids, T entity) {
+        return updateByIds(LongIds.toArray(ids), entity);
+    }
+
+    @Override
+    default Iterable<Long> dropByIds(Iterable<Long> ids) {
+        return LongIds.asList(dropByIds(LongIds.toArray(ids)));
+    }
+}
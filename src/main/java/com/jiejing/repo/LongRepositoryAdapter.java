@@ -0,0 +1,174 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo;
+
+import com.jiejing.repo.utils.LongIds;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The long repository delegates to a generic one, the primitive ids are passed as lists backed by the arrays
+ *
+ * @param <T> the entity type
+ */
+class LongRepositoryAdapter<T> implements LongRepository<T> {
+
+    private final Repository<Long, T> delegate;
+
+    LongRepositoryAdapter(Repository<Long, T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long getLongId(T entity) {
+        return delegate.getId(entity);
+    }
+
+    @Override
+    public Iterable<T> findAllById(long[] ids) {
+        return delegate.findAllById(LongIds.asList(ids));
+    }
+
+    @Override
+    public Iterable<T> updateByIds(long[] ids, T entity) {
+        return delegate.updateByIds(LongIds.asList(ids), entity);
+    }
+
+    @Override
+    public long[] dropByIds(long[] ids) {
+        return LongIds.toArray(delegate.dropByIds(LongIds.asList(ids)));
+    }
+
+    @Override
+    public Long getId(T entity) {
+        return delegate.getId(entity);
+    }
+
+    @Override
+    public void setId(T entity, Long id) {
+        delegate.setId(entity, id);
+    }
+
+    @Override
+    public Iterable<T> findAllById(Iterable<Long> ids) {
+        return delegate.findAllById(ids);
+    }
+
+    @Override
+    public Iterable<T> updateByIds(Iterable<Long> ids, T entity) {
+        return delegate.updateByIds(ids, entity);
+    }
+
+    @Override
+    public Iterable<Long> dropByIds(Iterable<Long> ids) {
+        return delegate.dropByIds(ids);
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        return delegate.insert(entity);
+    }
+
+    @Override
+    public <S extends T> Iterable<S> insertAll(Iterable<S> entities) {
+        return delegate.insertAll(entities);
+    }
+
+    @Override
+    public <S extends T> S save(S entity) {
+        return delegate.save(entity);
+    }
+
+    @Override
+    public <S extends T> Iterable<S> saveAll(Iterable<S> entities) {
+        return delegate.saveAll(entities);
+    }
+
+    @Override
+    public T updateById(T entity) {
+        return delegate.updateById(entity);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return delegate.existsById(id);
+    }
+
+    @Override
+    public Optional<T> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public Iterable<T> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public boolean dropById(Long id) {
+        return delegate.dropById(id);
+    }
+
+    @Override
+    public void delete(T entity) {
+        delegate.delete(entity);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        delegate.deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAll() {
+        delegate.deleteAll();
+    }
+
+    @Override
+    public long dropByCond(Object cond) {
+        return delegate.dropByCond(cond);
+    }
+
+    @Override
+    public long updateByCond(Object cond, T entity) {
+        return delegate.updateByCond(cond, entity);
+    }
+
+    @Override
+    public Iterable<T> findByCond(Object cond) {
+        return delegate.findByCond(cond);
+    }
+
+    @Override
+    public Iterable<T> findByCond(Object cond, Set<String> fields) {
+        return delegate.findByCond(cond, fields);
+    }
+
+    @Override
+    public long countByCond(Object cond) {
+        return delegate.countByCond(cond);
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.jiejing.repo;
 
+import com.jiejing.repo.proxy.OverflowPolicy;
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -32,4 +33,234 @@ public @interface RepoConfig {
   String table() default "";
   boolean useProxy() default false;
   boolean oneBasedPage() default false;
+
+  /**
+   * whether to cache entities found by id
+   */
+  boolean useCache() default false;
+
+  /**
+   * the max count of cached entities
+   */
+  long cacheMaxSize() default 10000L;
+
+  /**
+   * seconds to expire a cached entity after loaded, non positive to never expire
+   */
+  long cacheExpireSeconds() default 60L;
+
+  /**
+   * whether to cache entities found by id off-heap, as the second tier under the entity cache if both enabled. The
+   * entity properties must be of the types the off-heap codec supports, or the init fails
+   */
+  boolean useOffHeapCache() default false;
+
+  /**
+   * the max count of entities cached off-heap
+   */
+  long offHeapCacheMaxSize() default 100000L;
+
+  /**
+   * the bytes reserved off-heap per entity, larger encoded entities are not cached
+   */
+  int offHeapCacheSlotBytes() default 512;
+
+  /**
+   * seconds to expire an entity cached off-heap after loaded, non positive to never expire
+   */
+  long offHeapCacheExpireSeconds() default 600L;
+
+  /**
+   * the directory to dump the ids of the cached entities on destroy and load them on init, disabled if empty
+   */
+  String cacheSnapshotDir() default "";
+
+  /**
+   * the count of snapshot ids loaded per batch
+   */
+  int cacheSnapshotBatchSize() default 500;
+
+  /**
+   * the bean name of the executor for background work, a pool of the service if empty
+   */
+  String executor() default "";
+
+  /**
+   * the max count of threads of the pool of the service if no executor bean is named, the tasks beyond run on the
+   * caller thread
+   */
+  int executorThreads() default 16;
+
+  /**
+   * whether to run background work and asynchronous calls on virtual threads if no executor bean is named and the
+   * runtime supports them
+   */
+  boolean virtualThreads() default false;
+
+  /**
+   * the count of records fetched per chunk when streaming query results
+   */
+  int streamChunkSize() default 1000;
+
+  /**
+   * whether to fetch the next chunk ahead when streaming query results
+   */
+  boolean streamReadAhead() default false;
+
+  /**
+   * whether to count and fetch concurrently on the executor when finding paged records
+   */
+  boolean concurrentCount() default false;
+
+  /**
+   * whether to dispatch the proxy hooks asynchronously in batches
+   */
+  boolean asyncProxy() default false;
+
+  /**
+   * the count of workers dispatching the proxy hooks, the events of a table are always handled by one worker
+   */
+  int asyncProxyWorkers() default 1;
+
+  /**
+   * the capacity of the proxy event queue per worker
+   */
+  int asyncProxyQueueSize() default 10000;
+
+  /**
+   * the max count of entities per dispatched proxy batch
+   */
+  int asyncProxyBatchSize() default 500;
+
+  /**
+   * the max milliseconds to wait for more proxy events to batch
+   */
+  long asyncProxyLingerMillis() default 10L;
+
+  /**
+   * what to do with a proxy event when the queue is full
+   */
+  OverflowPolicy asyncProxyOverflow() default OverflowPolicy.BLOCK;
+
+  /**
+   * the max count of records per write to the repository in bulk writes, non positive to write all at once
+   */
+  int batchSize() default 0;
+
+  /**
+   * the max count of chunks written concurrently on the executor in bulk writes. Concurrent chunks are written out
+   * of the caller thread, so they do not join the transaction of the caller
+   */
+  int batchParallelism() default 1;
+
+  /**
+   * the count of records loaded per window when deleting or updating by query
+   */
+  int queryWindowSize() default 1000;
+
+  /**
+   * whether to coalesce concurrent lookups by id into batched finds
+   */
+  boolean batchLoad() default false;
+
+  /**
+   * microseconds to wait for more ids before a batched find is issued
+   */
+  long batchLoadWindowMicros() default 200L;
+
+  /**
+   * the count of distinct ids to issue a batched find without waiting the window
+   */
+  int batchLoadMaxSize() default 100;
+
+  /**
+   * whether to cache the results of queries with key, invalidated by any write to the table
+   */
+  boolean useQueryCache() default false;
+
+  /**
+   * the max count of cached query results
+   */
+  long queryCacheMaxSize() default 1000L;
+
+  /**
+   * seconds to expire a cached query result after loaded, non positive to never expire
+   */
+  long queryCacheExpireSeconds() default 60L;
+
+  /**
+   * milliseconds to read from the primary after the caller writes the table, if replicas are configured
+   */
+  long readYourWritesMillis() default 1000L;
+
+  /**
+   * whether to buffer the inserts of {@link RepoService#insertBuffered(Object)} and write them in bulk
+   */
+  boolean writeBehind() default false;
+
+  /**
+   * the max count of buffered inserts, the callers block while the buffer is full
+   */
+  int writeBehindCapacity() default 10000;
+
+  /**
+   * the max count of buffered inserts written at once
+   */
+  int writeBehindBatchSize() default 500;
+
+  /**
+   * the max milliseconds to wait for more inserts to write at once
+   */
+  long writeBehindLingerMillis() default 50L;
+
+  /**
+   * the max milliseconds to retry the buffered inserts rejected by the write limit before failing them
+   */
+  long writeBehindRetryMillis() default 10000L;
+
+  /**
+   * whether to limit the concurrent reads and writes of the table, adjusted by the latency. The limits are shared
+   * by the services of the table
+   */
+  boolean concurrencyLimit() default false;
+
+  /**
+   * the initial limit of the concurrent reads
+   */
+  int readConcurrency() default 20;
+
+  /**
+   * the max limit of the concurrent reads
+   */
+  int readConcurrencyMax() default 200;
+
+  /**
+   * the initial limit of the concurrent writes
+   */
+  int writeConcurrency() default 10;
+
+  /**
+   * the max limit of the concurrent writes
+   */
+  int writeConcurrencyMax() default 100;
+
+  /**
+   * the min limit of the concurrent reads and writes
+   */
+  int concurrencyMin() default 1;
+
+  /**
+   * the max count of calls waiting beyond the limit, the others are rejected at once
+   */
+  int concurrencyQueueSize() default 100;
+
+  /**
+   * the max milliseconds a call waits beyond the limit
+   */
+  long concurrencyQueueMillis() default 100L;
+
+  /**
+   * the ratio of the latency to the baseline latency taken as overloaded, which cuts the limit
+   */
+  double concurrencyTolerance() default 2.0D;
 }
@@ -15,26 +15,84 @@
 
 package com.jiejing.repo;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import javax.annotation.PostConstruct;
-
+import javax.annotation.PreDestroy;
+
+import com.jiejing.repo.accessor.EntityAccessor;
+import com.jiejing.repo.api.SeekPage;
+import com.jiejing.repo.buffer.WriteBehindBuffer;
+import com.jiejing.repo.cache.BatchLoader;
+import com.jiejing.repo.cache.CacheSnapshot;
+import com.jiejing.repo.cache.EntityCache;
+import com.jiejing.repo.cache.OffHeapEntityCache;
+import com.jiejing.repo.cache.QueryCache;
+import com.jiejing.repo.cache.SingleFlight;
+import com.jiejing.repo.cache.TableVersions;
+import com.jiejing.repo.cursor.QueryCursor;
+import com.jiejing.repo.id.IdGenerator;
+import com.jiejing.repo.id.SegmentIdGenerator;
+import com.jiejing.repo.id.SnowflakeIdGenerator;
+import com.jiejing.repo.limit.ConcurrencyLimiter;
+import com.jiejing.repo.limit.LimitExceededException;
+import com.jiejing.repo.limit.TableLimiters;
+import com.jiejing.repo.meta.RepoMetadata;
+import com.jiejing.repo.metrics.RepoMetrics;
+import com.jiejing.repo.metrics.RepoOperation;
+import com.jiejing.repo.proxy.AsyncRepoProxy;
+import com.jiejing.repo.replica.ReadWriteRepository;
+import com.jiejing.repo.replica.ReadYourWrites;
+import com.jiejing.repo.scan.IdRangeScanner;
+import com.jiejing.repo.scan.ScanOptions;
+import com.jiejing.repo.scan.ScanResult;
+import com.jiejing.repo.shard.ShardedRepository;
+import com.jiejing.repo.utils.FutureUtil;
 import com.jiejing.repo.utils.PageUtil;
+import com.jiejing.repo.utils.SeekPageable;
+import com.jiejing.repo.utils.SeekToken;
+import com.jiejing.repo.utils.Transactions;
+import com.jiejing.repo.utils.VirtualThreads;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
 
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -54,7 +112,163 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
         if (query.isEmpty()) {
             return Collections.emptyList();
         }
-        return findByQuery(query, sort, 0, 0);
+        return fetchByQuery(query, sort, 0, 0);
+    }
+
+    /**
+     * find records match the query with only the given fields filled. Override to select only the fields from the
+     * store, e.g. by {@code repository.findByCond(parseCond(query, fields), fields)}, or else the full records are
+     * fetched and trimmed
+     * @param query the query param
+     * @param sort the sort param
+     * @param offset the count of records to skip
+     * @param limit the max count of records to find
+     * @param fields the fields to fill
+     * @return found records
+     */
+    protected Iterable<T> findByQuery(Q query, Sort sort, long offset, long limit, Set<String> fields) {
+        return project(findByQuery(query, sort, offset, limit), fields, entityAccessor());
+    }
+
+    /**
+     * find records match the query with only the given fields filled
+     * @param query the query param
+     * @param sort the sort param
+     * @param offset the count of records to skip
+     * @param limit the max count of records to find
+     * @param fields the fields to fill, all if none given
+     * @return found records
+     */
+    protected Iterable<T> findByQuery(Q query, Sort sort, long offset, long limit, String... fields) {
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return fetchByQuery(query, sort, offset, limit, fieldsOf(fields));
+    }
+
+    /**
+     * find records match the query as the projection class, filled with the properties of the same name and
+     * assignable type from the records
+     * @param query the query param
+     * @param sort the sort param
+     * @param offset the count of records to skip
+     * @param limit the max count of records to find
+     * @param projection the projection class with a no-arg constructor
+     * @return found projections
+     */
+    protected <P> List<P> findByQuery(Q query, Sort sort, long offset, long limit, Class<P> projection) {
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> fields = projectionFields(projection);
+        return project(fetchByQuery(query, sort, offset, limit, fields), fields, EntityAccessor.of(projection));
+    }
+
+    /**
+     * find records match the query with the measured hook
+     */
+    private Iterable<T> fetchByQuery(Q query, Sort sort, long offset, long limit) {
+        return fetchByQuery(query, sort, offset, limit, null);
+    }
+
+    /**
+     * find records match the query with the measured hook
+     * @param fields the fields to fill, null for all
+     */
+    private Iterable<T> fetchByQuery(Q query, Sort sort, long offset, long limit, Set<String> fields) {
+        Object key = flightKey(RepoOperation.FIND_BY_QUERY, query, sort, offset, limit, fields);
+        Supplier<Iterable<T>> loader = () -> {
+            Iterable<T> found = null == fields ? findByQuery(query, sort, offset, limit)
+                : findByQuery(query, sort, offset, limit, fields);
+            // results with a key are shared by the single flight and the query cache, keep them from being modified
+            return null != key ? ImmutableList.copyOf(found) : found;
+        };
+        return measure(RepoOperation.FIND_BY_QUERY, -1L, () -> cachedQuery(key,
+            () -> singleFlight.execute(key, () -> limit(RepoOperation.FIND_BY_QUERY, limit, loader))),
+            RepoService::sizeOf);
+    }
+
+    /**
+     * run the query through the query cache if enabled
+     * @param key the key of the query, null to run without caching
+     * @param loader the loader to run the query
+     * @return the result
+     */
+    private <R> R cachedQuery(Object key, Supplier<R> loader) {
+        return null != queryCache ? queryCache.get(key, () -> fillFromPrimary(loader)) : loader.get();
+    }
+
+    /**
+     * load the records by ids to fill the entity caches if enabled, see {@link #fillFromPrimary(Supplier)}
+     */
+    private <R> R cacheFill(Supplier<R> load) {
+        return null != entityCache || null != offHeapCache ? fillFromPrimary(load) : load.get();
+    }
+
+    /**
+     * run the load filling a cache on the primary while any write to the table through this service is in the
+     * read-your-writes window. The replicas may still miss the write, and the record read from them would be cached
+     * for everyone after the eviction of the write
+     * @param load the load
+     * @return the loaded result
+     */
+    private <R> R fillFromPrimary(Supplier<R> load) {
+        if (!(repository instanceof ReadWriteRepository)
+            || !((ReadWriteRepository<I, T>) repository).recentlyWritten()) {
+            return load.get();
+        }
+        ReadYourWrites.Session pinned = new ReadYourWrites.Session();
+        pinPrimary(pinned);
+        ReadYourWrites.Session previous = ReadYourWrites.bind(pinned);
+        try {
+            return load.get();
+        } finally {
+            ReadYourWrites.bind(previous);
+        }
+    }
+
+    /**
+     * the key to share the in-flight execution of the operation. Callers in the read-your-writes window read from
+     * the primary, so they share the results only with each other
+     * @return the key, null if the query has no key
+     */
+    private Object flightKey(RepoOperation operation, Q query, Object... params) {
+        Object queryKey = query.queryKey();
+        if (null == queryKey) {
+            return null;
+        }
+        List<Object> key = new ArrayList<>(params.length + 3);
+        key.add(operation);
+        key.add(queryKey);
+        key.add(repository instanceof ReadWriteRepository && ((ReadWriteRepository<I, T>) repository).pinned());
+        Collections.addAll(key, params);
+        return key;
+    }
+
+    /**
+     * find records after the given id with the measured hook
+     */
+    private Iterable<T> fetchByQueryAfterId(Q query, I lastId, long limit) {
+        return measure(RepoOperation.FIND_BY_QUERY, -1L,
+            () -> limit(RepoOperation.FIND_BY_QUERY, limit, () -> findByQueryAfterId(query, lastId, limit)),
+            RepoService::sizeOf);
+    }
+
+    /**
+     * find the next window of records to delete or update straight from the store under the limit, a result shared
+     * by the single flight or the query cache may miss the latest writes
+     * @param query the query param
+     * @param lastId the last id of the previous window with the keyset, null for the first window
+     * @param offset the offset of the window without the keyset
+     * @param windowSize the max count of records in the window, non positive for all
+     * @return the records in the window
+     */
+    private List<T> fetchWindow(Q query, I lastId, long offset, long windowSize) {
+        return ImmutableList.copyOf(measure(RepoOperation.FIND_BY_QUERY, -1L,
+            () -> limit(RepoOperation.FIND_BY_QUERY, windowSize, () -> keysetSupported()
+                ? findByQueryAfterId(query, lastId, windowSize)
+                : findByQuery(query, null, offset, windowSize)),
+            RepoService::sizeOf));
     }
 
     /**
@@ -69,6 +283,196 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
         return findByQuery(query, null);
     }
 
+    /**
+     * find records after the given id ordered by id, required by the keyset streaming
+     * @param query the query param
+     * @param lastId the id of the last record fetched, null to start from the first record
+     * @param limit the max count of records to find
+     * @return found records ordered by id ascending
+     */
+    protected Iterable<T> findByQueryAfterId(Q query, I lastId, long limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * if {@link #findByQueryAfterId(IQuery, Object, long)} is implemented
+     * @return default to false
+     */
+    protected boolean keysetSupported() {
+        return false;
+    }
+
+    /**
+     * stream records match the query chunk by chunk, the stream should be closed after used
+     * @param query the query param
+     * @param sort the sort param
+     * @return the record stream
+     */
+    protected Stream<T> streamByQuery(Q query, Sort sort) {
+        return streamByQuery(query, sort, null != config ? config.streamChunkSize() : 1000,
+            null != config && config.streamReadAhead());
+    }
+
+    /**
+     * stream records match the query chunk by chunk, the stream should be closed after used
+     * @param query the query param
+     * @param sort the sort param
+     * @param chunkSize the count of records per chunk
+     * @param readAhead whether to fetch the next chunk ahead
+     * @return the record stream
+     */
+    protected Stream<T> streamByQuery(Q query, Sort sort, int chunkSize, boolean readAhead) {
+        return cursorByQuery(query, sort, chunkSize, readAhead).stream();
+    }
+
+    /**
+     * open a cursor on records match the query. Chunks are fetched by id when the keyset is supported and no sort is
+     * given, or else by offset
+     * @param query the query param
+     * @param sort the sort param
+     * @param chunkSize the count of records per chunk
+     * @param readAhead whether to fetch the next chunk ahead
+     * @return the cursor
+     */
+    protected QueryCursor<T> cursorByQuery(Q query, Sort sort, int chunkSize, boolean readAhead) {
+        QueryCursor.ChunkFetcher<T> fetcher;
+        if (query.isEmpty()) {
+            fetcher = (last, offset, size) -> Collections.emptyList();
+        } else if (keysetSupported() && (null == sort || sort.isUnsorted())) {
+            fetcher = (last, offset, size) -> fetchByQueryAfterId(query,
+                null != last ? innerRepository.getId(last) : null, size);
+        } else {
+            fetcher = (last, offset, size) -> fetchByQuery(query, sort, offset, size);
+        }
+        return new QueryCursor<>(fetcher, chunkSize, readAhead ? callerExecutor() : null);
+    }
+
+    /**
+     * scan records match the query range by range in parallel with the default options
+     * @param query the query param
+     * @param consumer the consumer of the record chunks, called concurrently
+     * @return the scan result
+     */
+    protected ScanResult scanByQuery(Q query, Consumer<? super List<T>> consumer) {
+        return scanByQuery(query, new ScanOptions(), consumer);
+    }
+
+    /**
+     * scan records match the query range by range in parallel for the batch jobs over the whole table, see
+     * {@link IdRangeScanner}. The id range is found by {@link #findMinIdByQuery(IQuery)} and
+     * {@link #findMaxIdByQuery(IQuery)}, and the ranges are fetched by
+     * {@link #findByQueryInIdRange(IQuery, Object, Object, long)}, all default to the keyset. Long or integer ids
+     * are required, and so is the query key with a checkpoint file, the table and the query key identify the scan
+     * @param query the query param
+     * @param options the scan options
+     * @param consumer the consumer of the record chunks, called concurrently
+     * @return the scan result
+     * @throws IllegalArgumentException if the query has no key but the scan has a checkpoint file
+     */
+    protected ScanResult scanByQuery(Q query, ScanOptions options, Consumer<? super List<T>> consumer) {
+        if (query.isEmpty()) {
+            return new ScanResult(0, 0, 0L, false);
+        }
+        Object queryKey = query.queryKey();
+        if (null == queryKey && null != options.getCheckpointFile()) {
+            throw new IllegalArgumentException("A scan with the checkpoint requires the query key to identify it");
+        }
+        LongFunction<I> idOf = integralId();
+        IdRangeScanner<T> scanner = new IdRangeScanner<>(schema() + "." + table(), options,
+            (afterId, toId, limit) -> measure(RepoOperation.FIND_BY_QUERY, -1L,
+                () -> limit(RepoOperation.FIND_BY_QUERY, limit, () -> ImmutableList.copyOf(
+                    findByQueryInIdRange(query, idOf.apply(afterId), idOf.apply(toId), limit))),
+                RepoService::sizeOf),
+            entity -> ((Number) innerRepository.getId(entity)).longValue());
+        return scanner.scan(schema() + "." + table() + ":" + queryKey, () -> {
+            Optional<I> minId = findMinIdByQuery(query);
+            Optional<I> maxId = minId.isPresent() ? findMaxIdByQuery(query) : Optional.empty();
+            if (!maxId.isPresent()) {
+                return null;
+            }
+            return new long[] {((Number) minId.get()).longValue(), ((Number) maxId.get()).longValue()};
+        }, consumer);
+    }
+
+    /**
+     * find records with ids in the range ordered by id, required by the scan
+     * @param query the query param
+     * @param afterId the id to start after
+     * @param toId the end id inclusive
+     * @param limit the max count of records to find
+     * @return found records ordered by id ascending, default to filter the records found by the keyset
+     */
+    protected Iterable<T> findByQueryInIdRange(Q query, I afterId, I toId, long limit) {
+        List<T> found = ImmutableList.copyOf(findByQueryAfterId(query, afterId, limit));
+        long end = ((Number) toId).longValue();
+        int n = 0;
+        while (n < found.size() && ((Number) innerRepository.getId(found.get(n))).longValue() <= end) {
+            n++;
+        }
+        return found.subList(0, n);
+    }
+
+    /**
+     * find the min id of the records match the query, required by the scan
+     * @param query the query param
+     * @return the min id, default to the id of the first record found by the keyset
+     */
+    protected Optional<I> findMinIdByQuery(Q query) {
+        return StreamSupport.stream(fetchByQueryAfterId(query, null, 1L).spliterator(), false).findFirst()
+            .map(innerRepository::getId);
+    }
+
+    /**
+     * find the max id of the records match the query, required by the scan. Override to query the max id at once
+     * @param query the query param
+     * @return the max id, default to search by the keyset probes in logarithmic count of the id span
+     */
+    protected Optional<I> findMaxIdByQuery(Q query) {
+        Optional<I> minId = findMinIdByQuery(query);
+        if (!minId.isPresent()) {
+            return Optional.empty();
+        }
+        LongFunction<I> idOf = integralId();
+        // an id at known exists and no id is after bound, gallop from the min id then bisect
+        long known = ((Number) minId.get()).longValue();
+        long bound = Integer.class == idType ? Integer.MAX_VALUE : Long.MAX_VALUE;
+        long step = 1L;
+        boolean galloping = true;
+        while (known < bound) {
+            long probe;
+            if (galloping && step < bound - known) {
+                probe = known + step;
+                step = step < Long.MAX_VALUE / 2 ? step << 1 : Long.MAX_VALUE;
+            } else {
+                galloping = false;
+                probe = known + (bound - known) / 2;
+            }
+            Iterator<T> next = fetchByQueryAfterId(query, idOf.apply(probe), 1L).iterator();
+            if (next.hasNext()) {
+                known = ((Number) innerRepository.getId(next.next())).longValue();
+            } else {
+                bound = probe;
+                galloping = false;
+            }
+        }
+        return Optional.of(idOf.apply(known));
+    }
+
+    /**
+     * the converter from long to the id type
+     * @throws UnsupportedOperationException if the id type is not long or integer
+     */
+    @SuppressWarnings("unchecked")
+    private LongFunction<I> integralId() {
+        if (Long.class == idType) {
+            return id -> (I) Long.valueOf(id);
+        }
+        if (Integer.class == idType) {
+            return id -> (I) Integer.valueOf((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, id)));
+        }
+        throw new UnsupportedOperationException("Long or integer ids are required to scan, found " + idType);
+    }
+
     /**
      * find the first record match the query
      * @param query the query param
@@ -76,12 +480,13 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the found record
      */
     protected Optional<T> findOneByQuery(Q query, Sort sort) {
-        long foundCount = countByQuery(query);
-        if (foundCount > 0L) {
-            Iterable<T> resultIterable = findByQuery(query, sort, 0L, 1L);
-            return StreamSupport.stream(resultIterable.spliterator(), false).findFirst();
+        if (query.isEmpty()) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return measure(RepoOperation.FIND_ONE_BY_QUERY, -1L, () -> {
+            Iterable<T> resultIterable = fetchByQuery(query, sort, 0L, 1L);
+            return StreamSupport.stream(resultIterable.spliterator(), false).findFirst();
+        }, found -> found.isPresent() ? 1L : 0L);
     }
 
     /**
@@ -91,13 +496,111 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the paged records
      */
     protected Page<T> findByQueryPage(Q query, Pageable pageable) {
-        long totalCount = countByQuery(query);
-        if (0L == totalCount) {
+        return pageByQuery(query, pageable, null);
+    }
+
+    /**
+     * find the paged records match the query with only the given fields filled
+     * @param query the query param
+     * @param pageable the page param
+     * @param fields the fields to fill, all if none given
+     * @return the paged records
+     */
+    protected Page<T> findByQueryPage(Q query, Pageable pageable, String... fields) {
+        return pageByQuery(query, pageable, fieldsOf(fields));
+    }
+
+    /**
+     * find the paged records match the query as the projection class, see
+     * {@link #findByQuery(IQuery, Sort, long, long, Class)}
+     * @param query the query param
+     * @param pageable the page param
+     * @param projection the projection class with a no-arg constructor
+     * @return the paged projections
+     */
+    protected <P> Page<P> findByQueryPage(Q query, Pageable pageable, Class<P> projection) {
+        Set<String> fields = projectionFields(projection);
+        Page<T> page = pageByQuery(query, pageable, fields);
+        return new PageImpl<>(project(page.getContent(), fields, EntityAccessor.of(projection)), page.getPageable(),
+            page.getTotalElements());
+    }
+
+    /**
+     * find the paged records match the query
+     * @param fields the fields to fill, null for all
+     */
+    private Page<T> pageByQuery(Q query, Pageable pageable, Set<String> fields) {
+        return measure(RepoOperation.FIND_BY_QUERY_PAGE, -1L, () -> {
+            if (null != config && config.concurrentCount()) {
+                return findByQueryPageConcurrently(query, pageable, fields);
+            }
+            long totalCount = countByQuery(query);
+            if (0L == totalCount) {
+                return Page.empty();
+            }
+            Iterable<T> itemList = fetchByQuery(query, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize(), fields);
+            return new PageImpl<>(ImmutableList.copyOf(itemList), pageable, totalCount);
+        }, page -> page.getNumberOfElements());
+    }
+
+    /**
+     * find the paged records match the query, count on the executor while fetching
+     * @param query the query param
+     * @param pageable the page param
+     * @param fields the fields to fill, null for all
+     * @return the paged records
+     */
+    private Page<T> findByQueryPageConcurrently(Q query, Pageable pageable, Set<String> fields) {
+        if (query.isEmpty()) {
+            return Page.empty();
+        }
+        CompletableFuture<Long> totalFuture = CompletableFuture.supplyAsync(() -> countByQuery(query),
+            callerExecutor());
+        List<T> items;
+        try {
+            items = ImmutableList.copyOf(fetchByQuery(query, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize(), fields));
+        } catch (RuntimeException e) {
+            totalFuture.cancel(false);
+            throw e;
+        }
+        long totalCount = FutureUtil.join(totalFuture);
+        if (0L == totalCount && items.isEmpty()) {
             return Page.empty();
         }
-        Iterable<T> itemList = findByQuery(query, pageable.getSort(),
-            pageable.getOffset(), pageable.getPageSize());
-        return new PageImpl<>(ImmutableList.copyOf(itemList), pageable, totalCount);
+        return new PageImpl<>(items, pageable, totalCount);
+    }
+
+    /**
+     * find the sliced records match the query without counting, one more record is fetched to tell if there is
+     * a next slice
+     * @param query the query param
+     * @param pageable the page param
+     * @return the sliced records
+     */
+    protected Slice<T> findByQuerySlice(Q query, Pageable pageable) {
+        if (query.isEmpty()) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+        return measure(RepoOperation.FIND_BY_QUERY_SLICE, -1L, () -> {
+            List<T> items = ImmutableList.copyOf(fetchByQuery(query, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize() + 1L));
+            boolean hasNext = items.size() > pageable.getPageSize();
+            return new SliceImpl<>(hasNext ? items.subList(0, pageable.getPageSize()) : items, pageable, hasNext);
+        }, slice -> slice.getNumberOfElements());
+    }
+
+    /**
+     * find the sliced records by query, sort and page param
+     * @param query the query param
+     * @param sort the sort param
+     * @param pageNo the page no
+     * @param pageSize the page size
+     * @return the sliced records
+     */
+    protected Slice<T> findByQuerySlice(Q query, Sort sort, int pageNo, int pageSize) {
+        return findByQuerySlice(query, PageUtil.toPageable(pageNo, pageSize, sort, oneBasedPage()));
     }
 
     /**
@@ -149,6 +652,61 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
         return findByQueryPage(query, null, pageNo, pageSize, oneBasedPage());
     }
 
+    /**
+     * find records after the given sort key values, required by the seek paging. Records should be ordered by the
+     * sort and then the id, and be strictly after the tuple of the last values and the last id in that order
+     * @param query the query param
+     * @param sort the sort param
+     * @param lastValues the sort key values of the last record in the order of the sort, null for the first page
+     * @param lastId the id of the last record, null for the first page
+     * @param limit the max count of records to find
+     * @return found records
+     */
+    protected Iterable<T> findByQueryAfter(Q query, Sort sort, Object[] lastValues, I lastId, long limit) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * find the seek paged records match the query, every page costs the same no matter how deep it is
+     * @param query the query param
+     * @param pageable the seek page param
+     * @return the seek paged records
+     */
+    protected SeekPage<T> findByQuerySeek(Q query, SeekPageable pageable) {
+        if (query.isEmpty()) {
+            return new SeekPage<>(Collections.emptyList(), null);
+        }
+        return measure(RepoOperation.FIND_BY_QUERY_SEEK, -1L, () -> {
+            Sort sort = pageable.getSort();
+            SeekToken token = pageable.decodeToken();
+            List<T> items = ImmutableList.copyOf(limit(RepoOperation.FIND_BY_QUERY_SEEK, pageable.getPageSize() + 1L,
+                () -> findByQueryAfter(query, sort, null != token ? token.getValues() : null,
+                    null != token ? (I) token.getId() : null, pageable.getPageSize() + 1L)));
+            if (items.size() <= pageable.getPageSize()) {
+                return new SeekPage<>(items, null);
+            }
+
+            items = items.subList(0, pageable.getPageSize());
+            T last = items.get(items.size() - 1);
+            EntityAccessor<T> accessor = entityAccessor();
+            Object[] lastValues = sort.stream()
+                .map(order -> accessor.getProperty(last, order.getProperty())).toArray();
+            return new SeekPage<>(items, new SeekToken(sort, lastValues, innerRepository.getId(last)).encode());
+        }, page -> page.getContent().size());
+    }
+
+    /**
+     * find the seek paged records match the query
+     * @param query the query param
+     * @param sort the sort param
+     * @param token the continuation token of the previous page, null for the first page
+     * @param pageSize the page size
+     * @return the seek paged records
+     */
+    protected SeekPage<T> findByQuerySeek(Q query, Sort sort, String token, int pageSize) {
+        return findByQuerySeek(query, PageUtil.toSeekPageable(token, pageSize, sort));
+    }
+
     /**
      * delete the entity with the given id
      * @param id the id to drop
@@ -177,6 +735,28 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
         return insertAll(ImmutableList.of(entity)).iterator().next();
     }
 
+    /**
+     * insert an entity behind the caller, buffered inserts are written in bulk through {@link #insertAll(Iterable)}
+     * once the batch size or the linger time is reached. Inserted at once if the write-behind is disabled
+     * @param entity the entity to insert, should not be modified after buffered
+     * @return the future completes with the inserted entity once written
+     */
+    public CompletableFuture<T> insertBuffered(T entity) {
+        if (null != writeBehindBuffer) {
+            // written on the flusher thread, open the window of the caller again once written
+            ReadYourWrites.Session session = ReadYourWrites.current();
+            pinPrimary(session);
+            return writeBehindBuffer.add(entity).whenComplete((written, e) -> pinPrimary(session));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(insert(entity));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * parse the bulk object
      * @param toSave the raw original records to write
@@ -197,6 +777,16 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
         return query;
     }
 
+    /**
+     * parse the repository condition from query to find only the given fields
+     * @param query the query
+     * @param fields the fields to find
+     * @return the parsed condition, default to the condition of all fields
+     */
+    protected Object parseCond(Q query, Set<String> fields) {
+        return parseCond(query);
+    }
+
     /**
      * the inner repository to access data
      */
@@ -204,7 +794,7 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
     protected Repository<I, T> innerRepository;
 
     /**
-     * the wrapper repository, left here to be history compatible
+     * the wrapper repository routes reads to the replicas if any, or else the inner repository
      */
     protected Repository<I, T> repository;
 
@@ -214,65 +804,551 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
     @Autowired(required = false)
     private IRepoProxy repoProxy;
 
+    /**
+     * the asynchronous dispatcher wraps the proxy, null if disabled
+     */
+    private AsyncRepoProxy asyncProxy;
+
+    /**
+     * the metrics to record operations, no-op if no bean registered
+     */
+    @Autowired(required = false)
+    private RepoMetrics repoMetrics = RepoMetrics.noop();
+
     /**
      * the repository service configuration
      */
     private RepoConfig config;
 
+    @Autowired(required = false)
+    private BeanFactory beanFactory;
+
     /**
-     * the type of entity id
+     * the executor for background work, resolved on first use
      */
-    protected Type idType;
+    private volatile Executor executor;
 
     /**
-     * the type of entity
+     * the default executor owned by the service and shut down on destroy, null if not created
      */
-    @Getter
-    protected Type entityType;
+    private ThreadPoolExecutor defaultExecutor;
 
     /**
-     * if the repository service use a proxy
-     * @return the flag
+     * the cache of entities found by id, null if disabled
      */
-    private boolean useProxy() {
-        boolean flag = null != config && config.useProxy();
-        return flag && repoProxy != null;
-    }
+    private EntityCache<I, T> entityCache;
 
     /**
-     * the schema/database of the entity
-     * @return the schema/database
+     * the off-heap cache of entities by id, null if disabled
      */
-    public String schema() {
-        return null != config ? config.schema() : "";
-    }
+    private OffHeapEntityCache<I, T> offHeapCache;
 
     /**
-     * the table name of the entity
-     * @return the table name
+     * the snapshot of the entity cache, null if disabled
      */
-    public String table() {
-        return null != config ? config.table() : "";
-    }
+    private CacheSnapshot<I> cacheSnapshot;
 
     /**
-     * the index of the first page
-     * @return default to 0
+     * the loader coalesces concurrent lookups by id, null if disabled
      */
-    public boolean oneBasedPage() {
-        return null != config && config.oneBasedPage();
-    }
+    private BatchLoader<I, T> batchLoader;
 
-    public RepoService() {
-        Class subClass = getClass();
-        while (!(subClass.getGenericSuperclass() instanceof ParameterizedType)
-                && subClass.getSuperclass() != RepoService.class) {
-            subClass = subClass.getSuperclass();
+    /**
+     * the group shares in-flight executions of identical queries with key
+     */
+    private final SingleFlight<Object> singleFlight = new SingleFlight<>();
+
+    /**
+     * the buffer coalesces the buffered inserts into bulk inserts, null if disabled
+     */
+    private WriteBehindBuffer<T> writeBehindBuffer;
+
+    /**
+     * the generator of ids assigned before inserted, null to leave the ids to the repository
+     */
+    private IdGenerator<I> idGenerator;
+
+    /**
+     * the cache of query results with key, null if disabled
+     */
+    private QueryCache queryCache;
+
+    /**
+     * the limiter of the concurrent reads, null if not limited
+     */
+    private ConcurrencyLimiter readLimiter;
+
+    /**
+     * the limiter of the concurrent writes, null if not limited
+     */
+    private ConcurrencyLimiter writeLimiter;
+
+    /**
+     * the write version of the table, bumped on every write
+     */
+    private final AtomicLong tableVersion;
+
+    /**
+     * the type of entity id
+     */
+    protected Type idType;
+
+    /**
+     * the type of entity
+     */
+    @Getter
+    protected Type entityType;
+
+    /**
+     * the property accessor of entity, generated at build time or resolved on first use
+     */
+    private volatile EntityAccessor<T> entityAccessor;
+
+    /**
+     * if the repository service use a proxy
+     * @return the flag
+     */
+    private boolean useProxy() {
+        boolean flag = null != config && config.useProxy();
+        return flag && repoProxy != null;
+    }
+
+    /**
+     * the schema/database of the entity
+     * @return the schema/database
+     */
+    public String schema() {
+        return null != config ? config.schema() : "";
+    }
+
+    /**
+     * the table name of the entity
+     * @return the table name
+     */
+    public String table() {
+        return null != config ? config.table() : "";
+    }
+
+    /**
+     * the index of the first page
+     * @return default to 0
+     */
+    public boolean oneBasedPage() {
+        return null != config && config.oneBasedPage();
+    }
+
+    public RepoService() {
+        RepoMetadata<I, T> metadata = (RepoMetadata<I, T>) RepoMetadata.of(getClass());
+        if (null != metadata) {
+            idType = metadata.idType();
+            entityType = metadata.entityType();
+            config = metadata.config();
+            entityAccessor = metadata.accessor();
+        } else {
+            // resolve through the generic subclasses in between, LongRepoService<T, Q> binds the id type itself
+            ResolvableType repoType = ResolvableType.forClass(getClass()).as(RepoService.class);
+            idType = repoType.getGeneric(0).resolve();
+            entityType = repoType.getGeneric(1).resolve();
+            config = this.getClass().getAnnotation(RepoConfig.class);
+        }
+        if (null != config && config.useCache()) {
+            EntityAccessor<T> accessor = entityAccessor();
+            entityCache = new EntityCache<>(config.cacheMaxSize(), config.cacheExpireSeconds(), entity -> {
+                T copy = accessor.newInstance();
+                accessor.copyProperties(entity, copy);
+                return copy;
+            });
+        }
+        if (null != config && config.useOffHeapCache()) {
+            offHeapCache = new OffHeapEntityCache<>((Class<I>) idType, (Class<T>) entityType,
+                config.offHeapCacheMaxSize(), config.offHeapCacheSlotBytes(), config.offHeapCacheExpireSeconds());
+        }
+        tableVersion = TableVersions.of(schema(), table());
+        if (null != config && config.useQueryCache()) {
+            queryCache = new QueryCache(config.queryCacheMaxSize(), config.queryCacheExpireSeconds(), tableVersion);
+        }
+        if (null != config && config.concurrencyLimit()) {
+            readLimiter = TableLimiters.reads(schema(), table(), name -> new ConcurrencyLimiter(name,
+                config.readConcurrency(), config.concurrencyMin(), config.readConcurrencyMax(),
+                config.concurrencyQueueSize(), config.concurrencyQueueMillis(), config.concurrencyTolerance()));
+            writeLimiter = TableLimiters.writes(schema(), table(), name -> new ConcurrencyLimiter(name,
+                config.writeConcurrency(), config.concurrencyMin(), config.writeConcurrencyMax(),
+                config.concurrencyQueueSize(), config.concurrencyQueueMillis(), config.concurrencyTolerance()));
+        }
+    }
+
+    /**
+     * the executor for background work and asynchronous calls, configured by {@link RepoConfig#executor()} and
+     * {@link RepoConfig#virtualThreads()}, or else the default executor of the service
+     * @return the executor
+     */
+    protected Executor executor() {
+        Executor resolved = executor;
+        if (null == resolved) {
+            synchronized (this) {
+                if (null == executor) {
+                    String executorName = null != config ? config.executor() : "";
+                    if (!executorName.isEmpty() && null != beanFactory) {
+                        executor = beanFactory.getBean(executorName, Executor.class);
+                    } else if (null != config && config.virtualThreads() && VirtualThreads.executor().isPresent()) {
+                        executor = VirtualThreads.executor().get();
+                    } else {
+                        defaultExecutor = newDefaultExecutor();
+                        executor = defaultExecutor;
+                    }
+                }
+                resolved = executor;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * the default executor of up to {@link #executorThreads()} named daemon threads. It queues no task, a task
+     * submitted while all the threads are busy runs on the caller thread, so a task waiting for the tasks it
+     * submits never waits for a queued one, and no task is dropped after the executor is shut down
+     */
+    private ThreadPoolExecutor newDefaultExecutor() {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(executorThreads(), executorThreads(), 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("repo-" + schema() + "." + table()
+            + "-%d").setDaemon(true).build(), (task, rejectedBy) -> task.run());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * the max count of threads of the default executor
+     * @return default to 16
+     */
+    public int executorThreads() {
+        return null != config ? config.executorThreads() : 16;
+    }
+
+    /**
+     * run the call on the executor
+     * @param call the call
+     * @return the future of the call result
+     */
+    private <R> CompletableFuture<R> async(Supplier<R> call) {
+        return CompletableFuture.supplyAsync(call, callerExecutor());
+    }
+
+    /**
+     * the executor runs the tasks in the read-your-writes session of the caller, so the writes run on it open the
+     * windows of the caller and the reads run on it see the writes of the caller
+     * @return the executor bound to the session of the current thread
+     */
+    private Executor callerExecutor() {
+        ReadYourWrites.Session session = ReadYourWrites.current();
+        Executor delegate = executor();
+        return task -> delegate.execute(() -> {
+            ReadYourWrites.Session previous = ReadYourWrites.bind(session);
+            try {
+                task.run();
+            } finally {
+                ReadYourWrites.bind(previous);
+            }
+        });
+    }
+
+    /**
+     * the requested fields in a stable set
+     * @return the fields, null for all if none given
+     */
+    private static Set<String> fieldsOf(String... fields) {
+        return null == fields || 0 == fields.length ? null : ImmutableSet.copyOf(fields);
+    }
+
+    /**
+     * the properties of the projection class writable from the entity properties of assignable types
+     */
+    private Set<String> projectionFields(Class<?> projection) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (PropertyDescriptor target : BeanUtils.getPropertyDescriptors(projection)) {
+            PropertyDescriptor source = BeanUtils.getPropertyDescriptor((Class<?>) entityType, target.getName());
+            if (null != target.getWriteMethod() && null != source && null != source.getReadMethod()
+                && ClassUtils.isAssignable(target.getWriteMethod().getParameterTypes()[0],
+                source.getReadMethod().getReturnType())) {
+                fields.add(target.getName());
+            }
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("No property of " + projection.getName() + " found in " + entityType);
+        }
+        return ImmutableSet.copyOf(fields);
+    }
+
+    /**
+     * copy the given fields of the records into new instances of the target
+     */
+    private <P> List<P> project(Iterable<T> found, Set<String> fields, EntityAccessor<P> target) {
+        EntityAccessor<T> source = entityAccessor();
+        List<P> projected = new ArrayList<>();
+        for (T entity : found) {
+            P item = target.newInstance();
+            for (String field : fields) {
+                target.setProperty(item, field, source.getProperty(entity, field));
+            }
+            projected.add(item);
+        }
+        return projected;
+    }
+
+    /**
+     * the property accessor of entity
+     * @return the accessor
+     */
+    protected EntityAccessor<T> entityAccessor() {
+        if (null == entityAccessor) {
+            entityAccessor = EntityAccessor.of((Class<T>) entityType);
+        }
+        return entityAccessor;
+    }
+
+    /**
+     * run and record the operation to the metrics
+     * @param operation the operation
+     * @param rowsIn the count of records or ids passed in, -1 if unknown
+     * @param call the operation call
+     * @param rowsOut the function to count the records returned or affected
+     * @return the result of the call
+     */
+    private <R> R measure(RepoOperation operation, long rowsIn, Supplier<R> call, ToLongFunction<R> rowsOut) {
+        if (RepoOperation.Kind.WRITE == operation.kind()) {
+            // pin the caller ahead of any write, the records loaded for the write are read from the primary as well
+            pinPrimary();
+        }
+        RepoMetrics metrics = repoMetrics;
+        if (!metrics.isEnabled()) {
+            return call.get();
+        }
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            metrics.record(schema(), table(), operation, System.nanoTime() - start, rowsIn, -1L, true);
+            throw e;
+        }
+        metrics.record(schema(), table(), operation, System.nanoTime() - start, rowsIn, rowsOut.applyAsLong(result),
+            false);
+        return result;
+    }
+
+    /**
+     * run a single call to the store within the concurrency limit of the table if enabled. Bulk writes are limited
+     * chunk by chunk and window by window, reads are limited at the loads behind the caches, single flights and
+     * batches, so the reads served without the store take no slot. The baseline latency is kept per operation and
+     * power of two of the rows, a bulk call is not taken as queueing behind the single row calls
+     * @param operation the operation of the call
+     * @param rows the count of rows the call reads or writes at most, non positive if unknown
+     * @param call the call to the store
+     * @throws LimitExceededException if rejected
+     */
+    private <R> R limit(RepoOperation operation, long rows, Supplier<R> call) {
+        ConcurrencyLimiter limiter = RepoOperation.Kind.WRITE == operation.kind() ? writeLimiter : readLimiter;
+        if (null == limiter) {
+            return call.get();
+        }
+        int bucket = rows > 0L ? 64 - Long.numberOfLeadingZeros(rows) : 0;
+        return limiter.call(Arrays.asList(operation, bucket), call);
+    }
+
+    private void proxyInsert(Iterable<T> entities) {
+        measure(RepoOperation.PROXY_INSERT, sizeOf(entities), () -> {
+            repoProxy.preInsert((Class<T>) entityType, schema(), table(), entities);
+            return entities;
+        }, inserted -> -1L);
+    }
+
+    private void proxyDelete(Iterable<T> entities) {
+        measure(RepoOperation.PROXY_DELETE, sizeOf(entities), () -> {
+            repoProxy.preDelete((Class<T>) entityType, schema(), table(), entities);
+            return entities;
+        }, deleted -> -1L);
+    }
+
+    private void proxyUpdate(Iterable<T> oldEntities, Iterable<T> newEntities, Set<String> modifiedFields) {
+        measure(RepoOperation.PROXY_UPDATE, sizeOf(newEntities), () -> {
+            repoProxy.preUpdate((Class<T>) entityType, schema(), table(), oldEntities, newEntities, modifiedFields);
+            return newEntities;
+        }, updated -> -1L);
+    }
+
+    /**
+     * the size of the iterable without iterating it
+     * @param items the items
+     * @return the size if the items is a collection, or else -1
+     */
+    private static long sizeOf(Iterable<?> items) {
+        return items instanceof Collection ? ((Collection<?>) items).size() : -1L;
+    }
+
+    /**
+     * the max count of records per write in bulk writes
+     * @return default to 0 to write all at once
+     */
+    public int batchSize() {
+        return null != config ? config.batchSize() : 0;
+    }
+
+    /**
+     * write the items chunk by chunk, concurrently on the executor if {@link RepoConfig#batchParallelism()} is
+     * greater than 1. No more chunk is started once a chunk fails
+     * @param items the items to write
+     * @param batchSize the max count of items per chunk
+     * @param writer the chunk writer
+     * @return the results of chunks in order
+     */
+    private <X, R> List<R> writeChunks(Iterable<X> items, int batchSize, Function<List<X>, R> writer) {
+        int parallelism = null != config ? config.batchParallelism() : 1;
+        List<R> results = new ArrayList<>();
+        // partition lists into views, so the chunks of the primitive backed ids stay primitive
+        Iterable<List<X>> chunks = items instanceof List ? Lists.partition((List<X>) items, batchSize)
+            : Iterables.partition(items, batchSize);
+        if (parallelism <= 1) {
+            for (List<X> chunk : chunks) {
+                results.add(writer.apply(chunk));
+            }
+            return results;
+        }
+
+        Executor chunkExecutor = callerExecutor();
+        Semaphore inFlight = new Semaphore(parallelism);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<R>> futures = new ArrayList<>();
+        RuntimeException failure = null;
+        for (List<X> chunk : chunks) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IllegalStateException("Interrupted while writing chunks", e);
+                break;
+            }
+            if (failed.get()) {
+                inFlight.release();
+                break;
+            }
+            CompletableFuture<R> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> writer.apply(chunk), chunkExecutor);
+            } catch (RejectedExecutionException e) {
+                // the executor bean may be bounded or shut down, the chunks already started are still joined
+                failure = e;
+                inFlight.release();
+                break;
+            }
+            future.whenComplete((r, e) -> {
+                if (null != e) {
+                    failed.set(true);
+                }
+                inFlight.release();
+            });
+            futures.add(future);
+        }
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(FutureUtil.join(future));
+            } catch (RuntimeException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * the hit/miss/eviction counters of the entity cache
+     * @return the cache stats, all zero if the cache is disabled
+     */
+    public CacheStats entityCacheStats() {
+        return null != entityCache ? entityCache.stats() : new CacheStats(0L, 0L, 0L, 0L, 0L, 0L);
+    }
+
+    /**
+     * the hit/miss/eviction counters of the off-heap entity cache
+     * @return the cache stats, all zero if the cache is disabled
+     */
+    public CacheStats offHeapCacheStats() {
+        return null != offHeapCache ? offHeapCache.stats() : new CacheStats(0L, 0L, 0L, 0L, 0L, 0L);
+    }
+
+    /**
+     * the hit/miss/eviction counters of the query cache
+     * @return the cache stats, all zero if the cache is disabled
+     */
+    public CacheStats queryCacheStats() {
+        return null != queryCache ? queryCache.stats() : new CacheStats(0L, 0L, 0L, 0L, 0L, 0L);
+    }
+
+    /**
+     * the write version of the table, bumped on every write through the services of the table
+     * @return the version
+     */
+    public long tableVersion() {
+        return tableVersion.get();
+    }
+
+    /**
+     * evict the cached entities with ids and the cached query results. In a transaction they are evicted again after
+     * it completes, the records loaded by others before the commit would be cached with the replaced values
+     * @param ids the id set
+     */
+    private void evictCache(Iterable<I> ids) {
+        List<I> idList = Lists.newArrayList(ids);
+        invalidateCached(idList);
+        Transactions.afterCompletion(() -> invalidateCached(idList));
+    }
+
+    /**
+     * evict the cached entities by the ids held in the given entities and the cached query results, see
+     * {@link #evictCache(Iterable)}
+     * @param entities the entities, the ones without id are skipped
+     */
+    private void evictCacheOf(Iterable<? extends T> entities) {
+        List<I> ids = Lists.newArrayList();
+        if (null != entityCache || null != offHeapCache) {
+            for (T entity : entities) {
+                I id = null != entity ? innerRepository.getId(entity) : null;
+                if (null != id) {
+                    ids.add(id);
+                }
+            }
         }
+        evictCache(ids);
+    }
 
-        idType = ((ParameterizedType) subClass.getGenericSuperclass()).getActualTypeArguments()[0];
-        entityType = ((ParameterizedType) subClass.getGenericSuperclass()).getActualTypeArguments()[1];
-        config = this.getClass().getAnnotation(RepoConfig.class);
+    /**
+     * evict all the cached entities and query results, see {@link #evictCache(Iterable)}
+     */
+    private void evictCacheAll() {
+        invalidateCachedAll();
+        Transactions.afterCompletion(this::invalidateCachedAll);
+    }
+
+    private void invalidateCached(List<I> ids) {
+        tableVersion.incrementAndGet();
+        if (null != entityCache) {
+            entityCache.invalidateAll(ids);
+        }
+        if (null != offHeapCache) {
+            offHeapCache.invalidateAll(ids);
+        }
+    }
+
+    private void invalidateCachedAll() {
+        tableVersion.incrementAndGet();
+        if (null != entityCache) {
+            entityCache.invalidateAll();
+        }
+        if (null != offHeapCache) {
+            offHeapCache.invalidateAll();
+        }
     }
 
     /**
@@ -280,6 +1356,50 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      */
     protected abstract Repository<I, T> initInnerRepository();
 
+    /**
+     * the generator of ids assigned to the entities without id before inserted, see {@link SegmentIdGenerator} and
+     * {@link SnowflakeIdGenerator}
+     * @return default to null to leave the ids to the repository
+     */
+    protected IdGenerator<I> initIdGenerator() {
+        return null;
+    }
+
+    /**
+     * the replica repositories to read from, the inner repository is the primary to write to
+     * @return default to empty to read from the inner repository
+     */
+    protected List<Repository<I, T>> initReplicaRepositories() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * milliseconds to read from the primary after the caller writes the table, see {@link ReadYourWrites}
+     * @return default to 1000
+     */
+    public long readYourWritesMillis() {
+        return null != config ? config.readYourWritesMillis() : 1000L;
+    }
+
+    /**
+     * open the read-your-writes window ahead of a write, so the records loaded for the write are read from the
+     * primary as well
+     */
+    private void pinPrimary() {
+        if (repository instanceof ReadWriteRepository) {
+            ((ReadWriteRepository<I, T>) repository).pin();
+        }
+    }
+
+    /**
+     * open the read-your-writes window on the table for the session
+     */
+    private void pinPrimary(ReadYourWrites.Session session) {
+        if (repository instanceof ReadWriteRepository) {
+            ((ReadWriteRepository<I, T>) repository).pin(session);
+        }
+    }
+
     @PostConstruct
     private void initRepository() {
         if (innerRepository == null) {
@@ -289,8 +1409,160 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
 
         Objects.requireNonNull(innerRepository, "Initialize inner repository failed");
 
-        //TODO set repository to inner repository directly
-        this.repository = innerRepository;
+        idGenerator = initIdGenerator();
+        if (innerRepository instanceof ShardedRepository && null == idGenerator) {
+            // the shard of an entity is routed by the id, which the store cannot assign on insert
+            throw new IllegalStateException("The sharded repository of " + schema() + "." + table()
+                + " requires the id generator, see initIdGenerator");
+        }
+
+        if (null != config && config.writeBehind()) {
+            writeBehindBuffer = new WriteBehindBuffer<>("repo-write-behind-" + schema() + "." + table(),
+                this::insertBehind, config.writeBehindCapacity(), batchSize() > 0
+                ? Math.min(config.writeBehindBatchSize(), batchSize()) : config.writeBehindBatchSize(),
+                config.writeBehindLingerMillis());
+        }
+
+        List<Repository<I, T>> replicas = initReplicaRepositories();
+        if (null != replicas && !replicas.isEmpty()) {
+            this.repository = new ReadWriteRepository<>(innerRepository, replicas, schema() + "." + table(),
+                readYourWritesMillis());
+        } else {
+            this.repository = innerRepository;
+        }
+
+        if (useProxy() && config.asyncProxy() && !(repoProxy instanceof AsyncRepoProxy)) {
+            asyncProxy = new AsyncRepoProxy(repoProxy, config.asyncProxyWorkers(), config.asyncProxyQueueSize(),
+                config.asyncProxyBatchSize(), config.asyncProxyLingerMillis(), config.asyncProxyOverflow());
+            repoProxy = asyncProxy;
+        }
+
+        if (null != config && config.batchLoad()) {
+            batchLoader = new BatchLoader<>(config.batchLoadWindowMicros(), config.batchLoadMaxSize(),
+                ids -> measure(RepoOperation.BATCH_LOAD, ids.size(),
+                    () -> limit(RepoOperation.BATCH_LOAD, ids.size(),
+                        () -> cacheFill(() -> repository.findAllById(ids))),
+                    RepoService::sizeOf),
+                innerRepository::getId);
+        }
+
+        if (null != config && !config.cacheSnapshotDir().isEmpty() && (null != entityCache || null != offHeapCache)) {
+            Path file = Paths.get(config.cacheSnapshotDir(), getClass().getName() + ".snapshot");
+            cacheSnapshot = new CacheSnapshot<>(file, (Class<I>) idType);
+            // warm up in background not to block the start
+            executor().execute(this::loadCacheSnapshot);
+        }
+    }
+
+    @PreDestroy
+    private void destroyRepository() {
+        // flush the buffered inserts before the proxy stops, they notify the proxy
+        if (null != writeBehindBuffer) {
+            writeBehindBuffer.close();
+        }
+        if (null != cacheSnapshot) {
+            dumpCacheSnapshot();
+        }
+        if (null != asyncProxy) {
+            asyncProxy.close();
+        }
+        if (null != defaultExecutor) {
+            defaultExecutor.shutdown();
+        }
+        if (innerRepository instanceof ShardedRepository) {
+            ((ShardedRepository<I, T>) innerRepository).close();
+        }
+    }
+
+    /**
+     * load the entity cache snapshot. The snapshot only holds the ids of the hot entities, they are loaded through
+     * findAllById in batches. The ids invalidated while loading are not put, and the snapshot is deleted once loaded
+     */
+    private void loadCacheSnapshot() {
+        long[] count = {0L};
+        try {
+            CacheSnapshot.Header header = cacheSnapshot.read(config.cacheSnapshotBatchSize(),
+                TimeUnit.SECONDS.toMillis(null != offHeapCache ? config.offHeapCacheExpireSeconds()
+                    : config.cacheExpireSeconds()), (snapshotHeader, batch) -> {
+                    Function<Iterable<I>, Iterable<T>> loader = repository::findAllById;
+                    count[0] += null != offHeapCache
+                        ? offHeapCache.loadAll(batch, loader, innerRepository::getId).size()
+                        : entityCache.loadAll(batch, loader, innerRepository::getId).size();
+                });
+            if (null != header) {
+                cacheSnapshot.delete();
+                log.info("Warmed up the cache of {}.{} from the snapshot dumped at {}, {} loaded", schema(),
+                    table(), header.getDumpedAt(), count[0]);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot load the cache snapshot {}", cacheSnapshot.getFile(), e);
+        }
+    }
+
+    /**
+     * dump the ids of the off-heap cache if enabled, or else the entity cache to the snapshot
+     */
+    private void dumpCacheSnapshot() {
+        try {
+            long count = cacheSnapshot.write(action -> {
+                if (null != offHeapCache) {
+                    offHeapCache.forEachId(action);
+                } else {
+                    entityCache.asMap().keySet().forEach(action);
+                }
+            });
+            log.info("Dumped {} cached ids of {}.{} to {}", count, schema(), table(), cacheSnapshot.getFile());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot dump the cache snapshot {}", cacheSnapshot.getFile(), e);
+        }
+    }
+
+    /**
+     * the write-behind buffer of inserts, holds the queue depth and flush counters
+     * @return the buffer or {@literal Optional#empty()} if the inserts are not buffered
+     */
+    public Optional<WriteBehindBuffer<T>> writeBehindBuffer() {
+        return Optional.ofNullable(writeBehindBuffer);
+    }
+
+    /**
+     * the adaptive limit of the concurrent reads of the table
+     * @return the limiter or {@literal Optional#empty()} if not limited
+     */
+    public Optional<ConcurrencyLimiter> readLimiter() {
+        return Optional.ofNullable(readLimiter);
+    }
+
+    /**
+     * the adaptive limit of the concurrent writes of the table
+     * @return the limiter or {@literal Optional#empty()} if not limited
+     */
+    public Optional<ConcurrencyLimiter> writeLimiter() {
+        return Optional.ofNullable(writeLimiter);
+    }
+
+    /**
+     * the loader coalesces concurrent lookups by id, holds the batch size and wait time metrics
+     * @return the loader or {@literal Optional#empty()} if the lookups are not batched
+     */
+    public Optional<BatchLoader<I, T>> batchLoader() {
+        return Optional.ofNullable(batchLoader);
+    }
+
+    /**
+     * the group shares in-flight executions of identical queries, holds the execution and shared counters
+     * @return the single-flight group
+     */
+    public SingleFlight<Object> singleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * the asynchronous proxy dispatcher, holds the queue depth and lag metrics
+     * @return the dispatcher or {@literal Optional#empty()} if the proxy is not dispatched asynchronously
+     */
+    public Optional<AsyncRepoProxy> asyncProxy() {
+        return repoProxy instanceof AsyncRepoProxy ? Optional.of((AsyncRepoProxy) repoProxy) : Optional.empty();
     }
 
     /**
@@ -299,24 +1571,63 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return deleted id set
      */
     public Iterable<I> deleteByIds(Iterable<I> ids) {
-        Iterable<I> droppedIds = repository.dropByIds(ids);
+        return deleteByIds(ids, batchSize());
+    }
 
-        if (useProxy()) {
+    /**
+     * delete entities with ids chunk by chunk
+     * @param ids the id set
+     * @param batchSize the max count of ids per chunk, non positive to delete all at once
+     * @return deleted id set
+     */
+    public Iterable<I> deleteByIds(Iterable<I> ids, int batchSize) {
+        return measure(RepoOperation.DELETE_BY_IDS, sizeOf(ids), () -> {
+            if (batchSize <= 0 || Iterables.size(ids) <= batchSize) {
+                return deleteChunk(ids);
+            }
+            writeChunks(ids, batchSize, this::deleteChunk);
+            return ids;
+        }, RepoService::sizeOf);
+    }
+
+    private Iterable<I> deleteChunk(Iterable<I> ids) {
+        dropChunk(ids, null);
+        return ids;
+    }
+
+    /**
+     * drop the entities with ids and notify the proxy
+     * @param ids the id set
+     * @param loaded the loaded entities with the ids, null to notify the proxy with entities only hold the ids
+     * @return dropped id set
+     */
+    private Iterable<I> dropChunk(Iterable<I> ids, List<T> loaded) {
+        Iterable<I> droppedIds;
+        try {
+            droppedIds = limit(RepoOperation.DELETE_BY_IDS, sizeOf(ids), () -> repository.dropByIds(ids));
+        } finally {
+            evictCache(ids);
+        }
+
+        if (useProxy() && null != loaded) {
+            proxyDelete(loaded);
+        } else if (useProxy()) {
+            EntityAccessor<T> accessor = entityAccessor();
             List<T> entities = StreamSupport.stream(ids.spliterator(), false).map(id -> {
                 T entity = null;
                 try {
-                    entity = ((Class<T>) getEntityType()).newInstance();
+                    entity = accessor.newInstance();
                     innerRepository.setId(entity, id);
                 } catch (Exception e) {
-                    e.printStackTrace();
+                    log.warn("Failed to build the deleted entity with id {}", id, e);
                 }
                 return entity;
             }).collect(Collectors.toList());
 
-            repoProxy.preDelete((Class<T>) getEntityType(), schema(), table(), entities);
+            proxyDelete(entities);
         }
 
-        return ids;
+        return droppedIds;
     }
 
     /**
@@ -325,26 +1636,46 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return deleted record count
      */
     protected long deleteByQuery(Q query) {
-        // skip delete for empty query
-        if (query.isEmpty()) {
-            return 0L;
-        }
-        long nDelete = countByQuery(query);
-        if (nDelete > 0) {
-            if (useProxy()) {
-                Iterable<T> toDeleted = findByQuery(query);
-                if (toDeleted.iterator().hasNext()) {
-                    Iterable droppedIds = deleteByIds(
-                      StreamSupport.stream(toDeleted.spliterator(), false)
-                        .map(m -> innerRepository.getId(m)).collect(
-                            Collectors.toList()));
-                    return StreamSupport.stream(droppedIds.spliterator(), false).count();
+        return measure(RepoOperation.DELETE_BY_QUERY, -1L, () -> {
+            // skip delete for empty query
+            if (query.isEmpty()) {
+                return 0L;
+            }
+            if (!useProxy()) {
+                try {
+                    return limit(RepoOperation.DELETE_BY_QUERY, -1L, () -> repository.dropByCond(parseCond(query)));
+                } finally {
+                    evictCacheAll();
                 }
-            } else {
-                repository.dropByCond(parseCond(query));
             }
-        }
-        return 0;
+
+            // load, notify and drop window by window to keep the memory bounded
+            int windowSize = queryWindowSize();
+            long nDelete = 0L;
+            I lastId = null;
+            Set<I> lastWindowIds = Collections.emptySet();
+            while (true) {
+                // dropped records are out of the query, so without the keyset the next window always starts from the
+                // first record
+                List<T> window = fetchWindow(query, lastId, 0L, windowSize);
+                if (window.isEmpty()) {
+                    break;
+                }
+                List<I> ids = idsOf(window);
+                if (!keysetSupported() && ids.stream().anyMatch(lastWindowIds::contains)) {
+                    log.warn("Records of {}.{} are still found after dropped, stop deleting by query",
+                        schema(), table());
+                    break;
+                }
+                nDelete += Iterables.size(dropChunk(ids, window));
+                if (window.size() < windowSize) {
+                    break;
+                }
+                lastId = ids.get(ids.size() - 1);
+                lastWindowIds = new HashSet<>(ids);
+            }
+            return nDelete;
+        }, count -> count);
     }
 
     /**
@@ -364,28 +1695,68 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return updated entities with ids
      */
     public Iterable<T> updateByIds(T entity, Iterable<I> ids) {
+        return updateByIds(entity, ids, batchSize());
+    }
 
-        if (useProxy()) {
-            List<T> toUpdateList = getListByIds(ids);
-
-            String[] nullProps = getNullPropertyNames(entity);
+    /**
+     * update multiple entities by ids chunk by chunk
+     * @param entity the entity holds updates
+     * @param ids the id set
+     * @param batchSize the max count of ids per chunk, non positive to update all at once
+     * @return updated entities with ids
+     */
+    public Iterable<T> updateByIds(T entity, Iterable<I> ids, int batchSize) {
+        return measure(RepoOperation.UPDATE_BY_IDS, sizeOf(ids), () -> {
+            if (batchSize <= 0 || Iterables.size(ids) <= batchSize) {
+                return updateChunk(entity, ids);
+            }
+            return Iterables.concat(writeChunks(ids, batchSize, chunk -> updateChunk(entity, chunk)));
+        }, RepoService::sizeOf);
+    }
 
-            List<T> updated = toUpdateList.stream().map(target -> {
-                BeanUtils.copyProperties(entity, target, nullProps);
-                return target;
-            }).collect(Collectors.toList());
+    private Iterable<T> updateChunk(T entity, Iterable<I> ids) {
+        return updateLoaded(entity, ids, useProxy() ? getListByIds(ids) : null);
+    }
 
+    /**
+     * update the entities with ids and notify the proxy
+     * @param entity the entity holds updates
+     * @param ids the id set
+     * @param toUpdateList the loaded entities with the ids, required in proxy mode
+     * @return updated entities with ids
+     */
+    private Iterable<T> updateLoaded(T entity, Iterable<I> ids, List<T> toUpdateList) {
+        if (useProxy()) {
             if (!CollectionUtils.isEmpty(toUpdateList)) {
-                Iterable<T> updateEntities = repository.updateByIds(ids, entity);
-                Set<String> modifiedFields = getModifiedFields(entity, toUpdateList);
-                repoProxy.preUpdate((Class<T>)entityType, schema(), table(), toUpdateList, updated, modifiedFields);
+                EntityAccessor<T> accessor = entityAccessor();
+                Set<String> modifiedFields = accessor.modifiedFields(entity, toUpdateList);
+                List<T> updated = new ArrayList<>(toUpdateList.size());
+                for (T oldEntity : toUpdateList) {
+                    T target = accessor.newInstance();
+                    accessor.copyProperties(oldEntity, target);
+                    accessor.copyNonNullProperties(entity, target);
+                    updated.add(target);
+                }
+
+                Iterable<T> updateEntities;
+                try {
+                    updateEntities = limit(RepoOperation.UPDATE_BY_IDS, sizeOf(ids),
+                        () -> repository.updateByIds(ids, entity));
+                } finally {
+                    evictCache(ids);
+                }
+                proxyUpdate(toUpdateList, updated, modifiedFields);
                 return updateEntities;
             }
 
             return ImmutableList.of();
         }
 
-        return repository.updateByIds(ids, entity);
+        try {
+            return limit(RepoOperation.UPDATE_BY_IDS, sizeOf(ids), () -> repository.updateByIds(ids, entity));
+        } finally {
+            evictCache(ids);
+        }
     }
 
     /**
@@ -395,23 +1766,72 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the updated count.
      */
     protected long updateByQuery(T entity, Q query) {
-        // skip update for empty query
-        if (query.isEmpty()) {
-            return 0L;
-        }
-        long nUpdate = countByQuery(query);
-        if (nUpdate > 0) {
-            Iterable<T> toUpdates = findByQuery(query);
-            if (toUpdates.iterator().hasNext()) {
-                updateByIds(entity, Lists.transform(ImmutableList.copyOf(toUpdates), repository::getId));
+        return measure(RepoOperation.UPDATE_BY_QUERY, -1L, () -> {
+            // skip update for empty query
+            if (query.isEmpty()) {
+                return 0L;
+            }
+            int windowSize = queryWindowSize();
+            long nUpdate = 0L;
+
+            if (keysetSupported()) {
+                // load, notify and update window by window to keep the memory bounded
+                I lastId = null;
+                while (true) {
+                    List<T> window = fetchWindow(query, lastId, 0L, windowSize);
+                    if (window.isEmpty()) {
+                        break;
+                    }
+                    List<I> ids = idsOf(window);
+                    updateLoaded(entity, ids, useProxy() ? window : null);
+                    nUpdate += window.size();
+                    if (window.size() < windowSize) {
+                        break;
+                    }
+                    lastId = ids.get(ids.size() - 1);
+                }
                 return nUpdate;
             }
-        }
-        return 0;
+
+            // updated records may move in or out of the query, so page through the records before updating any of
+            // them and keep only the ids, then load, notify and update window by window
+            List<I> ids = new ArrayList<>();
+            long offset = 0L;
+            while (true) {
+                List<T> window = fetchWindow(query, null, offset, windowSize);
+                ids.addAll(idsOf(window));
+                if (window.size() < windowSize) {
+                    break;
+                }
+                offset += window.size();
+            }
+            for (List<I> idWindow : Lists.partition(ids, windowSize)) {
+                updateChunk(entity, idWindow);
+                nUpdate += idWindow.size();
+            }
+            return nUpdate;
+        }, count -> count);
+    }
+
+    /**
+     * collect the ids of the entities when deleting or updating by query
+     * @param entities the entities
+     * @return the ids in the order of the entities
+     */
+    protected List<I> idsOf(Iterable<T> entities) {
+        return ImmutableList.copyOf(Iterables.transform(entities, innerRepository::getId));
+    }
+
+    /**
+     * the count of records loaded per window when deleting or updating by query
+     * @return default to 1000
+     */
+    public int queryWindowSize() {
+        return null != config ? config.queryWindowSize() : 1000;
     }
 
     public long countAll() {
-        return innerRepository.count();
+        return repository.count();
     }
 
     /**
@@ -420,10 +1840,14 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the count
      */
     protected long countByQuery(Q query) {
-        if (query.isEmpty()) {
-            return 0L;
-        }
-        return Long.valueOf(innerRepository.countByCond(parseCond(query))).intValue();
+        return measure(RepoOperation.COUNT_BY_QUERY, -1L, () -> {
+            if (query.isEmpty()) {
+                return 0L;
+            }
+            Object key = flightKey(RepoOperation.COUNT_BY_QUERY, query);
+            return cachedQuery(key, () -> singleFlight.execute(key,
+                () -> limit(RepoOperation.COUNT_BY_QUERY, -1L, () -> repository.countByCond(parseCond(query)))));
+        }, count -> -1L);
     }
 
     /**
@@ -433,7 +1857,36 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the entity with the given id or {@literal Optional#empty()} if none found
      */
     public Optional<T> getById(I id) {
-        return repository.findById(id);
+        return measure(RepoOperation.GET_BY_ID, 1L, () -> {
+            if (null != entityCache) {
+                return entityCache.get(id, this::loadById);
+            }
+            return loadById(id);
+        }, found -> found.isPresent() ? 1L : 0L);
+    }
+
+    /**
+     * find the entity by id through the off-heap cache if enabled
+     */
+    private Optional<T> loadById(I id) {
+        return null != offHeapCache ? offHeapCache.get(id, this::fetchById) : fetchById(id);
+    }
+
+    /**
+     * find the entity by id, in a batch if the lookups are batched
+     */
+    private Optional<T> fetchById(I id) {
+        return null != batchLoader ? batchLoader.load(id)
+            : limit(RepoOperation.GET_BY_ID, 1L, () -> cacheFill(() -> repository.findById(id)));
+    }
+
+    /**
+     * find the entities by ids through the off-heap cache if enabled
+     */
+    private Iterable<T> loadAllById(Iterable<I> ids) {
+        Function<Iterable<I>, Iterable<T>> loader = toLoad -> limit(RepoOperation.GET_ALL_BY_ID, sizeOf(toLoad),
+            () -> cacheFill(() -> repository.findAllById(toLoad)));
+        return null != offHeapCache ? offHeapCache.getAll(ids, loader, innerRepository::getId) : loader.apply(ids);
     }
     /**
      * Returns whether an entity with the given id exists.
@@ -442,7 +1895,90 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return {@literal true} if an entity with the given id exists, {@literal false} otherwise.
      */
     public Iterable<T> getAllById(Iterable<I> ids) {
-        return repository.findAllById(ids);
+        return measure(RepoOperation.GET_ALL_BY_ID, sizeOf(ids), () -> {
+            if (null != entityCache) {
+                return entityCache.getAll(ids, this::loadAllById, innerRepository::getId);
+            }
+            return loadAllById(ids);
+        }, RepoService::sizeOf);
+    }
+
+    /**
+     * retrieve an entity by its id asynchronously
+     * @param id must not be {@literal null}.
+     * @return the future of the entity with the given id or {@literal Optional#empty()} if none found
+     */
+    public CompletableFuture<Optional<T>> getByIdAsync(I id) {
+        return async(() -> getById(id));
+    }
+
+    /**
+     * retrieve entities by ids asynchronously
+     * @param ids must not be {@literal null}.
+     * @return the future of found entities
+     */
+    public CompletableFuture<Iterable<T>> getAllByIdAsync(Iterable<I> ids) {
+        return async(() -> getAllById(ids));
+    }
+
+    /**
+     * find records match the query asynchronously
+     * @param query the query param
+     * @param sort the sort param
+     * @return the future of found records
+     */
+    protected CompletableFuture<Iterable<T>> findByQueryAsync(Q query, Sort sort) {
+        return async(() -> findByQuery(query, sort));
+    }
+
+    /**
+     * find paged records match the query asynchronously
+     * @param query the query param
+     * @param pageable the page param
+     * @return the future of the page
+     */
+    protected CompletableFuture<Page<T>> findByQueryPageAsync(Q query, Pageable pageable) {
+        return async(() -> findByQueryPage(query, pageable));
+    }
+
+    /**
+     * count entities with query asynchronously
+     * @param query the query
+     * @return the future of the count
+     */
+    protected CompletableFuture<Long> countByQueryAsync(Q query) {
+        return async(() -> countByQuery(query));
+    }
+
+    /**
+     * insert multiple entities asynchronously, the proxy is notified in the same task after the write. Writes
+     * submitted separately are not ordered, chain the futures to order them
+     * @param entities entities to insert
+     * @return the future of inserted entities
+     */
+    public CompletableFuture<Iterable<T>> insertAllAsync(Iterable<T> entities) {
+        return async(() -> insertAll(entities));
+    }
+
+    /**
+     * update multiple entities by ids asynchronously, the proxy is notified in the same task after the write.
+     * Writes submitted separately are not ordered, chain the futures to order them
+     * @param entity the entity holds updates
+     * @param ids the id set
+     * @return the future of updated entities with ids
+     */
+    public CompletableFuture<Iterable<T>> updateByIdsAsync(T entity, Iterable<I> ids) {
+        return async(() -> updateByIds(entity, ids));
+    }
+
+    /**
+     * delete multiple entities by ids asynchronously, the proxy is notified in the same task after the write.
+     * Writes submitted separately are not ordered, chain the futures to order them
+     * @param ids the id set
+     * @return the future of deleted ids
+     */
+    public CompletableFuture<Iterable<I>> deleteByIdsAsync(Iterable<I> ids) {
+        return async(() -> deleteByIds(ids));
     }
 
     /**
@@ -451,9 +1987,87 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return inserted entities;
      */
     public Iterable<T> insertAll(Iterable<T> entities) {
-        repository.insertAll(entities);
+        return insertAll(entities, batchSize());
+    }
+
+    /**
+     * insert multiple entites chunk by chunk;
+     * @param entities entities to insert
+     * @param batchSize the max count of entities per chunk, non positive to insert all at once
+     * @return inserted entities;
+     */
+    public Iterable<T> insertAll(Iterable<T> entities, int batchSize) {
+        return measure(RepoOperation.INSERT_ALL, sizeOf(entities), () -> {
+            assignIds(entities);
+            if (batchSize <= 0 || Iterables.size(entities) <= batchSize) {
+                return insertChunk(entities);
+            }
+            writeChunks(entities, batchSize, this::insertChunk);
+            return entities;
+        }, RepoService::sizeOf);
+    }
+
+    /**
+     * assign generated ids to the entities without id if the id generator is set
+     * @param entities the entities to insert
+     */
+    private void assignIds(Iterable<T> entities) {
+        if (null == idGenerator) {
+            return;
+        }
+        List<T> withoutId = new ArrayList<>();
+        for (T entity : entities) {
+            if (null == innerRepository.getId(entity)) {
+                withoutId.add(entity);
+            }
+        }
+        if (withoutId.isEmpty()) {
+            return;
+        }
+        List<I> ids = idGenerator.nextIds(withoutId.size());
+        for (int i = 0; i < withoutId.size(); i++) {
+            innerRepository.setId(withoutId.get(i), ids.get(i));
+        }
+    }
+
+    /**
+     * insert the entities flushed by the write-behind buffer, a batch is no larger than the write batch size. A batch
+     * rejected by the write limit is retried with backoff up to {@link RepoConfig#writeBehindRetryMillis()}, and then
+     * fails the futures of its entities through the buffer
+     * @param entities the flushed entities
+     */
+    private void insertBehind(List<T> entities) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.writeBehindRetryMillis());
+        long backoffMillis = 10L;
+        while (true) {
+            try {
+                insertAll(entities, 0);
+                return;
+            } catch (LimitExceededException e) {
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis) - deadline > 0) {
+                    throw e;
+                }
+                log.debug("Write-behind insert into {}.{} is rejected: {}, retry in {} ms", schema(), table(),
+                    e.getMessage(), backoffMillis);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoffMillis = Math.min(1000L, backoffMillis * 2);
+            }
+        }
+    }
+
+    private Iterable<T> insertChunk(Iterable<T> entities) {
+        try {
+            limit(RepoOperation.INSERT_ALL, sizeOf(entities), () -> repository.insertAll(entities));
+        } finally {
+            evictCacheOf(entities);
+        }
         if (useProxy()) {
-            repoProxy.preInsert((Class<T>)entityType, schema(), table(), entities);
+            proxyInsert(entities);
         }
         return entities;
     }
@@ -464,16 +2078,23 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the bulk result
      */
     public final Object saveIgnore(Iterable<T> entities) {
-        Object bulkResult = saveIgnoreInternal(entities);
+        return measure(RepoOperation.SAVE_IGNORE, sizeOf(entities), () -> {
+            Object bulkResult;
+            try {
+                bulkResult = limit(RepoOperation.SAVE_IGNORE, sizeOf(entities), () -> saveIgnoreInternal(entities));
+            } finally {
+                evictCacheOf(entities);
+            }
 
-        if (useProxy()) {
-            Iterable<T> inserted = parseBulk(entities, bulkResult);
-            if (inserted.iterator().hasNext()) {
-                repoProxy.preInsert((Class<T>)entityType, schema(), table(), inserted);
+            if (useProxy()) {
+                Iterable<T> inserted = parseBulk(entities, bulkResult);
+                if (inserted.iterator().hasNext()) {
+                    proxyInsert(inserted);
+                }
             }
-        }
 
-        return bulkResult;
+            return bulkResult;
+        }, bulk -> -1L);
     }
 
     /**
@@ -483,15 +2104,23 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
      * @return the bulk result
      */
     public final Object saveIgnore(Iterable<T> entities, String... fieldName) {
-        Object bulkResult = saveIgnoreInternal(entities, fieldName);
+        return measure(RepoOperation.SAVE_IGNORE, sizeOf(entities), () -> {
+            Object bulkResult;
+            try {
+                bulkResult = limit(RepoOperation.SAVE_IGNORE, sizeOf(entities),
+                    () -> saveIgnoreInternal(entities, fieldName));
+            } finally {
+                evictCacheOf(entities);
+            }
 
-        if (useProxy()) {
-            Iterable<T> inserted = parseBulk(entities, bulkResult);
-            if (inserted.iterator().hasNext()) {
-                repoProxy.preInsert((Class<T>)entityType, schema(), table(), inserted);
+            if (useProxy()) {
+                Iterable<T> inserted = parseBulk(entities, bulkResult);
+                if (inserted.iterator().hasNext()) {
+                    proxyInsert(inserted);
+                }
             }
-        }
-        return bulkResult;
+            return bulkResult;
+        }, bulk -> -1L);
     }
 
     /**
@@ -512,61 +2141,4 @@ public abstract class RepoService<I, T, Q extends IQuery<T>> {
     protected Object saveIgnoreInternal(Iterable<T> entities, String... fieldName) {
         throw new UnsupportedOperationException();
     }
-
-    /**
-     * parse the modified fields
-     * @param entity
-     * @param oldEntities
-     * @return the modified fields
-     */
-    private Set<String> getModifiedFields(T entity, List<T> oldEntities) {
-        Map<String, Object> modifiedFields = Maps.newHashMap();
-        Map<String, Method> getters = Maps.newHashMap();
-
-        Class<T> entityClass = (Class<T>) entityType;
-        Arrays.stream(entityClass.getDeclaredFields()).filter(field -> !Modifier.isStatic(field.getModifiers())).forEach(field -> {
-            try {
-                Method getter = entityClass.getMethod("get" + field.getName().substring(0, 1).toUpperCase() + field.getName().substring(1));
-                getters.put(field.getName(), getter);
-
-                Object fieldValue = getter.invoke(entity);
-                if (fieldValue != null) {
-                    modifiedFields.put(field.getName(), fieldValue);
-                }
-            } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
-                e.printStackTrace();
-            }
-        });
-
-        Set<String> modifiedFieldNames = modifiedFields.entrySet().stream().filter(entry -> {
-            for (T oldModel : oldEntities) {
-                Method getter = getters.get(entry.getKey());
-                Object oldFieldValue = null;
-                try {
-                    oldFieldValue = getter.invoke(oldModel);
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    e.printStackTrace();
-                }
-                if (!entry.getValue().equals(oldFieldValue)) {
-                    return true;
-                }
-            }
-            return false;
-        }).map(Map.Entry::getKey).collect(Collectors.toSet());
-
-        return modifiedFieldNames;
-    }
-
-    private static String[] getNullPropertyNames(Object source) {
-        final BeanWrapper src = new BeanWrapperImpl(source);
-        java.beans.PropertyDescriptor[] pds = src.getPropertyDescriptors();
-
-        Set<String> emptyNames = new HashSet<String>();
-        for (java.beans.PropertyDescriptor pd : pds) {
-            Object srcValue = src.getPropertyValue(pd.getName());
-            if (srcValue == null) emptyNames.add(pd.getName());
-        }
-        String[] result = new String[emptyNames.size()];
-        return emptyNames.toArray(result);
-    }
 }
@@ -15,6 +15,7 @@
 
 package com.jiejing.repo;
 
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import org.springframework.data.repository.CrudRepository;
@@ -193,6 +194,17 @@ public interface Repository<I, T> extends CrudRepository<T, I> {
      */
     Iterable<T> findByCond(Object cond);
 
+    /**
+     * Find entities with filter param, only the given fields are required to be filled. Repositories able to select
+     * columns should override to save the transfer and materialization of the other fields.
+     * @param cond the filter param.
+     * @param fields the fields to fill.
+     * @return found entities, default to the entities with all fields filled
+     */
+    default Iterable<T> findByCond(Object cond, Set<String> fields) {
+        return findByCond(cond);
+    }
+
     /**
      * Count the entities match the filter param
      * @param cond the filter param
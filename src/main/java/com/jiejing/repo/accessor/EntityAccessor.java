@@ -0,0 +1,95 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.accessor;
+
+import java.util.Set;
+
+/**
+ * The accessor to read, write, copy and diff properties of entities without per-call introspection
+ * @param <T> the entity type
+ */
+public interface EntityAccessor<T> {
+
+    /**
+     * Get the accessor of the entity class, built once and cached
+     * @param entityClass the entity class
+     * @param <T> the entity type
+     * @return the accessor
+     */
+    static <T> EntityAccessor<T> of(Class<T> entityClass) {
+        return EntityAccessors.get(entityClass);
+    }
+
+    /**
+     * Create a new entity with the no-arg constructor
+     * @return the new entity
+     */
+    T newInstance();
+
+    /**
+     * The readable property names
+     * @return the property names, the returned array should not be modified
+     */
+    String[] propertyNames();
+
+    /**
+     * Get the property value
+     * @param entity the entity
+     * @param name the property name
+     * @return the property value
+     * @throws IllegalArgumentException if the property is not readable
+     */
+    Object getProperty(T entity, String name);
+
+    /**
+     * Set the property value
+     * @param entity the entity
+     * @param name the property name
+     * @param value the property value, null sets the default value of a primitive property
+     * @throws IllegalArgumentException if the property is not writable
+     */
+    void setProperty(T entity, String name, Object value);
+
+    /**
+     * The readable properties with null value
+     * @param entity the entity
+     * @return the property names
+     */
+    String[] nullPropertyNames(T entity);
+
+    /**
+     * Copy all the readable and writable properties
+     * @param source the entity to copy from
+     * @param target the entity to copy to
+     */
+    void copyProperties(T source, T target);
+
+    /**
+     * Copy the readable and writable properties with non-null value
+     * @param source the entity to copy from
+     * @param target the entity to copy to
+     */
+    void copyNonNullProperties(T source, T target);
+
+    /**
+     * The fields declared by the entity class with non-null value in the entity that differ from any of the old
+     * entities
+     * @param entity the entity holds the updates
+     * @param oldEntities the old entities
+     * @return the modified field names
+     */
+    Set<String> modifiedFields(T entity, Iterable<T> oldEntities);
+}
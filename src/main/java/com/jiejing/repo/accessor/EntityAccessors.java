@@ -0,0 +1,37 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.accessor;
+
+/**
+ * The cache of entity accessors by class
+ */
+final class EntityAccessors {
+
+    private static final ClassValue<EntityAccessor<?>> ACCESSORS = new ClassValue<EntityAccessor<?>>() {
+        @Override
+        protected EntityAccessor<?> computeValue(Class<?> type) {
+            return new PropertyTableAccessor<>(type);
+        }
+    };
+
+    private EntityAccessors() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> EntityAccessor<T> get(Class<T> entityClass) {
+        return (EntityAccessor<T>) ACCESSORS.get(entityClass);
+    }
+}
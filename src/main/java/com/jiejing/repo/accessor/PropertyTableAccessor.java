@@ -0,0 +1,286 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.accessor;
+
+import com.google.common.base.Defaults;
+import com.google.common.collect.Maps;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * The accessor backed by a property table built once per entity class
+ * <p>
+ * Properties are resolved the same way as spring bean wrappers. Getters, setters and the constructor are bound to
+ * functional interfaces with {@link LambdaMetafactory}, or invoked reflectively when the entity class is not
+ * visible to this class loader or not accessible.
+ */
+@Slf4j
+class PropertyTableAccessor<T> implements EntityAccessor<T> {
+
+    private final Class<T> entityClass;
+
+    private final Supplier<Object> constructor;
+
+    /**
+     * the readable property names
+     */
+    private final String[] names;
+
+    private final Function<Object, Object>[] getters;
+
+    /**
+     * the setters of the readable properties, null for the read-only ones
+     */
+    private final BiConsumer<Object, Object>[] setters;
+
+    /**
+     * the indexes of the readable and writable properties
+     */
+    private final int[] copyIndexes;
+
+    /**
+     * the indexes of the readable properties backed by fields declared in the entity class
+     */
+    private final int[] diffIndexes;
+
+    private final Map<String, Integer> indexes;
+
+    @SuppressWarnings("unchecked")
+    PropertyTableAccessor(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        boolean compiled = isVisible(entityClass);
+        this.constructor = bindConstructor(entityClass, compiled);
+
+        List<PropertyDescriptor> readable = new ArrayList<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(entityClass)) {
+            if (null != pd.getReadMethod()) {
+                readable.add(pd);
+            }
+        }
+        int size = readable.size();
+        this.names = new String[size];
+        this.getters = new Function[size];
+        this.setters = new BiConsumer[size];
+        this.indexes = Maps.newHashMapWithExpectedSize(size);
+        List<Integer> copyList = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            PropertyDescriptor pd = readable.get(i);
+            names[i] = pd.getName();
+            indexes.put(pd.getName(), i);
+            getters[i] = bindGetter(pd.getReadMethod(), compiled);
+            if (null != pd.getWriteMethod()) {
+                setters[i] = bindSetter(pd.getWriteMethod(), compiled);
+                Class<?> type = pd.getWriteMethod().getParameterTypes()[0];
+                if (type.isPrimitive()) {
+                    // null sets the default value of the primitive rather than failing to unbox
+                    BiConsumer<Object, Object> setter = setters[i];
+                    Object defaultValue = Defaults.defaultValue(type);
+                    setters[i] = (entity, value) -> setter.accept(entity, null != value ? value : defaultValue);
+                }
+                copyList.add(i);
+            }
+        }
+        this.copyIndexes = copyList.stream().mapToInt(Integer::intValue).toArray();
+        this.diffIndexes = Arrays.stream(entityClass.getDeclaredFields())
+            .filter(field -> !Modifier.isStatic(field.getModifiers()))
+            .map(Field::getName)
+            .filter(indexes::containsKey)
+            .mapToInt(indexes::get)
+            .toArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T newInstance() {
+        if (null == constructor) {
+            throw new UnsupportedOperationException("No accessible no-arg constructor for " + entityClass.getName());
+        }
+        return (T) constructor.get();
+    }
+
+    @Override
+    public String[] propertyNames() {
+        return names;
+    }
+
+    @Override
+    public Object getProperty(T entity, String name) {
+        return getters[indexOf(name)].apply(entity);
+    }
+
+    @Override
+    public void setProperty(T entity, String name, Object value) {
+        BiConsumer<Object, Object> setter = setters[indexOf(name)];
+        if (null == setter) {
+            throw new IllegalArgumentException("Property " + name + " of " + entityClass.getName()
+                + " is not writable");
+        }
+        setter.accept(entity, value);
+    }
+
+    @Override
+    public String[] nullPropertyNames(T entity) {
+        String[] found = new String[names.length];
+        int count = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (null == getters[i].apply(entity)) {
+                found[count++] = names[i];
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    @Override
+    public void copyProperties(T source, T target) {
+        for (int i : copyIndexes) {
+            setters[i].accept(target, getters[i].apply(source));
+        }
+    }
+
+    @Override
+    public void copyNonNullProperties(T source, T target) {
+        for (int i : copyIndexes) {
+            Object value = getters[i].apply(source);
+            if (null != value) {
+                setters[i].accept(target, value);
+            }
+        }
+    }
+
+    @Override
+    public Set<String> modifiedFields(T entity, Iterable<T> oldEntities) {
+        Set<String> modified = new HashSet<>();
+        for (int i : diffIndexes) {
+            Object value = getters[i].apply(entity);
+            if (null == value) {
+                continue;
+            }
+            for (T oldEntity : oldEntities) {
+                if (!value.equals(getters[i].apply(oldEntity))) {
+                    modified.add(names[i]);
+                    break;
+                }
+            }
+        }
+        return modified;
+    }
+
+    private int indexOf(String name) {
+        Integer index = indexes.get(name);
+        if (null == index) {
+            throw new IllegalArgumentException("Property " + name + " of " + entityClass.getName()
+                + " is not readable");
+        }
+        return index;
+    }
+
+    /**
+     * if the lambda spun for the class can link against it
+     */
+    private static boolean isVisible(Class<?> entityClass) {
+        if (!Modifier.isPublic(entityClass.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(entityClass.getName(), false, PropertyTableAccessor.class.getClassLoader())
+                == entityClass;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> bindConstructor(Class<?> entityClass, boolean compiled) {
+        Constructor<?> ctor;
+        try {
+            ctor = entityClass.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        if (compiled && Modifier.isPublic(ctor.getModifiers())) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflectConstructor(ctor);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    handle, handle.type());
+                return (Supplier<Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("Cannot compile the constructor of {}, fallback to reflection", entityClass, e);
+            }
+        }
+        ReflectionUtils.makeAccessible(ctor);
+        return () -> BeanUtils.instantiateClass(ctor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> bindGetter(Method method, boolean compiled) {
+        if (compiled && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                    MethodType.methodType(Function.class), MethodType.methodType(Object.class, Object.class),
+                    handle, handle.type().wrap());
+                return (Function<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("Cannot compile the getter {}, fallback to reflection", method, e);
+            }
+        }
+        ReflectionUtils.makeAccessible(method);
+        return entity -> ReflectionUtils.invokeMethod(method, entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> bindSetter(Method method, boolean compiled) {
+        if (compiled && Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflect(method);
+                MethodType instantiated = MethodType.methodType(void.class,
+                    handle.type().parameterType(0), handle.type().wrap().parameterType(1));
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class), handle, instantiated);
+                return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+            } catch (Throwable e) {
+                log.debug("Cannot compile the setter {}, fallback to reflection", method, e);
+            }
+        }
+        ReflectionUtils.makeAccessible(method);
+        return (entity, value) -> ReflectionUtils.invokeMethod(method, entity, value);
+    }
+}
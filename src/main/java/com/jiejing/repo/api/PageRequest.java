@@ -1,8 +1,10 @@
 package com.jiejing.repo.api;
 
 import com.jiejing.repo.utils.PageUtil;
+import com.jiejing.repo.utils.SeekPageable;
 import lombok.Data;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 /**
  * @author baihe created on 2019-01-23
@@ -27,6 +29,11 @@ public abstract class PageRequest {
    */
   private boolean oneBasedPage = false;
 
+  /**
+   * The continuation token of the previous page for seek paging
+   */
+  private String token;
+
   /**
    * Convert to Pageable object
    * @return the parsed Pageable
@@ -34,4 +41,13 @@ public abstract class PageRequest {
   public Pageable toPageable() {
     return PageUtil.toPageable(current.intValue(), size.intValue(), null, oneBasedPage);
   }
+
+  /**
+   * Convert to SeekPageable object
+   * @param sort the sort object
+   * @return the parsed SeekPageable
+   */
+  public SeekPageable toSeekPageable(Sort sort) {
+    return PageUtil.toSeekPageable(token, size.intValue(), sort);
+  }
 }
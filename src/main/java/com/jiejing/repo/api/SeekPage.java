@@ -0,0 +1,34 @@
+package com.jiejing.repo.api;
+
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Seek paged result, the next page is located by the continuation token
+ */
+@Getter
+public class SeekPage<T> {
+
+  /**
+   * Records of the page
+   */
+  private final List<T> content;
+
+  /**
+   * The continuation token of the next page, null if no more
+   */
+  private final String nextToken;
+
+  public SeekPage(List<T> content, String nextToken) {
+    this.content = content;
+    this.nextToken = nextToken;
+  }
+
+  /**
+   * Whether there is a next page
+   * @return the flag
+   */
+  public boolean hasNext() {
+    return null != nextToken;
+  }
+}
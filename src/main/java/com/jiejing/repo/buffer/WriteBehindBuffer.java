@@ -0,0 +1,214 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.buffer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The buffer coalesces single writes into bulk writes behind the callers
+ * <p>
+ * Entities are put into a bounded queue, the caller blocks while the queue is full. A flusher thread drains the
+ * queue for up to the linger time or the batch size and writes the drained entities at once, then completes the
+ * futures of the callers with the entities, or the failure of the write.
+ * <p>
+ * The entities are written later on another thread, so they should not be modified after added.
+ *
+ * @param <T> the entity type
+ */
+@Slf4j
+public class WriteBehindBuffer<T> implements Closeable {
+
+    private final Consumer<List<T>> writer;
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final BlockingQueue<Pending<T>> queue;
+
+    private final Thread flusher;
+
+    private volatile boolean closed;
+
+    private final AtomicLong flushedEntities = new AtomicLong();
+
+    private final AtomicLong flushedBatches = new AtomicLong();
+
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    /**
+     * @param name the name of the flusher thread
+     * @param writer the bulk writer
+     * @param capacity the max count of entities waiting in the buffer
+     * @param batchSize the max count of entities per bulk write
+     * @param lingerMillis the max milliseconds to wait for more entities to write
+     */
+    public WriteBehindBuffer(String name, Consumer<List<T>> writer, int capacity, int batchSize, long lingerMillis) {
+        if (capacity <= 0 || batchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid write-behind settings");
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.flusher = new Thread(this::run, name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * add the entity to write
+     * @param entity the entity
+     * @return the future completes with the entity once written
+     */
+    public CompletableFuture<T> add(T entity) {
+        Pending<T> pending = new Pending<>(entity);
+        if (closed) {
+            flush(Collections.singletonList(pending));
+            return pending.future;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind buffer", e);
+        }
+        // the flusher may stop right before the entity is queued
+        if (closed) {
+            flushLeft();
+        }
+        return pending.future;
+    }
+
+    /**
+     * the count of entities waiting in the buffer
+     * @return the depth
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long flushedEntities() {
+        return flushedEntities.get();
+    }
+
+    public long flushedBatches() {
+        return flushedBatches.get();
+    }
+
+    public long failedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * stop buffering, write the buffered entities and stop the flusher
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushLeft();
+    }
+
+    private void flushLeft() {
+        List<Pending<T>> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (int from = 0; from < left.size(); from += batchSize) {
+            flush(left.subList(from, Math.min(from + batchSize, left.size())));
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> window = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                drainWindow(window);
+            } catch (InterruptedException e) {
+                log.warn("Write-behind flusher {} is interrupted", flusher.getName());
+            }
+            if (!window.isEmpty()) {
+                flush(window);
+                window.clear();
+            }
+        }
+    }
+
+    private void drainWindow(List<Pending<T>> window) throws InterruptedException {
+        Pending<T> first = queue.poll(100L, TimeUnit.MILLISECONDS);
+        if (null == first) {
+            return;
+        }
+        window.add(first);
+        long deadline = first.addedNanos + lingerNanos;
+        while (window.size() < batchSize) {
+            if (queue.drainTo(window, batchSize - window.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (null == next) {
+                break;
+            }
+            window.add(next);
+        }
+    }
+
+    private void flush(List<Pending<T>> batch) {
+        List<T> entities = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            entities.add(pending.entity);
+        }
+        try {
+            writer.accept(entities);
+        } catch (RuntimeException | Error e) {
+            failedBatches.incrementAndGet();
+            log.error("Failed to write {} buffered entities {}", entities.size(), entities, e);
+            for (Pending<T> pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+        flushedBatches.incrementAndGet();
+        flushedEntities.addAndGet(entities.size());
+        for (Pending<T> pending : batch) {
+            pending.future.complete(pending.entity);
+        }
+    }
+
+    private static final class Pending<T> {
+        private final T entity;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long addedNanos = System.nanoTime();
+
+        private Pending(T entity) {
+            this.entity = entity;
+        }
+    }
+}
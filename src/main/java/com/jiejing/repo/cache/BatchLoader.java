@@ -0,0 +1,191 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import com.google.common.collect.Maps;
+import com.jiejing.repo.metrics.LatencyHistogram;
+import com.jiejing.repo.utils.FutureUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A loader coalesces the concurrent lookups by id into batched finds like the DataLoader
+ * <p>
+ * The first caller of a batch waits up to the window for others to join, then finds all the ids of the batch at
+ * once on its own thread. The caller filling the batch up to the max size finds it immediately instead. Duplicate
+ * ids in a batch share one lookup, no background thread is involved.
+ *
+ * @param <I> the id type
+ * @param <T> the entity type
+ */
+public class BatchLoader<I, T> {
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final Function<List<I>, Iterable<T>> loader;
+
+    private final Function<T, I> idGetter;
+
+    private final Object lock = new Object();
+
+    /**
+     * the batch collecting ids, guarded by the lock
+     */
+    private Batch<I, T> current;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder deduplicated = new LongAdder();
+
+    private final LatencyHistogram batchSizes = new LatencyHistogram();
+
+    private final LatencyHistogram waitNanos = new LatencyHistogram();
+
+    /**
+     * @param windowMicros microseconds to wait for more ids
+     * @param maxBatchSize the count of distinct ids to find without waiting
+     * @param loader the function to find entities by ids
+     * @param idGetter the function to get id of the found entity
+     */
+    public BatchLoader(long windowMicros, int maxBatchSize, Function<List<I>, Iterable<T>> loader,
+        Function<T, I> idGetter) {
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(windowMicros, 0L));
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.loader = loader;
+        this.idGetter = idGetter;
+    }
+
+    /**
+     * find the entity by id in a batch
+     * @param id the id
+     * @return the entity or {@literal Optional#empty()} if none found
+     */
+    public Optional<T> load(I id) {
+        requests.increment();
+        Batch<I, T> batch;
+        CompletableFuture<Optional<T>> future;
+        boolean leader;
+        boolean full;
+        synchronized (lock) {
+            leader = null == current;
+            if (leader) {
+                current = new Batch<>();
+            }
+            batch = current;
+            future = batch.futures.get(id);
+            if (null == future) {
+                future = new CompletableFuture<>();
+                batch.futures.put(id, future);
+            } else {
+                deduplicated.increment();
+            }
+            full = batch.futures.size() >= maxBatchSize;
+            if (full) {
+                current = null;
+            }
+        }
+
+        if (full) {
+            dispatch(batch);
+        } else if (leader) {
+            try {
+                batch.filled.await(windowNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            boolean expired;
+            synchronized (lock) {
+                expired = current == batch;
+                if (expired) {
+                    current = null;
+                }
+            }
+            if (expired) {
+                dispatch(batch);
+            }
+        }
+        return FutureUtil.join(future);
+    }
+
+    /**
+     * find the ids of the batch detached from collecting and complete the callers
+     */
+    private void dispatch(Batch<I, T> batch) {
+        batch.filled.countDown();
+        waitNanos.record(System.nanoTime() - batch.createNanos);
+        batchSizes.record(batch.futures.size());
+        try {
+            Map<I, T> found = Maps.newHashMapWithExpectedSize(batch.futures.size());
+            for (T entity : loader.apply(new ArrayList<>(batch.futures.keySet()))) {
+                found.put(idGetter.apply(entity), entity);
+            }
+            batch.futures.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+        } catch (RuntimeException | Error e) {
+            batch.futures.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * the count of lookups requested
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * the count of lookups shared an in-batch lookup of the same id
+     */
+    public long deduplicated() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * the count of batched finds issued
+     */
+    public long batches() {
+        return batchSizes.count();
+    }
+
+    /**
+     * the distribution of distinct ids per batch
+     */
+    public LatencyHistogram batchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * the distribution of nanoseconds from the first lookup of a batch to its dispatch
+     */
+    public LatencyHistogram waitNanos() {
+        return waitNanos;
+    }
+
+    private static class Batch<I, T> {
+        private final long createNanos = System.nanoTime();
+
+        private final Map<I, CompletableFuture<Optional<T>>> futures = Maps.newLinkedHashMap();
+
+        private final CountDownLatch filled = new CountDownLatch(1);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The file snapshot of the ids of cached entities to warm the caches up on restart
+ * <p>
+ * A snapshot is a header of the id type fingerprint and the dump time, followed by the records of the encoded ids.
+ * The entities are not written, they are loaded again by the ids as the table may be written since dumped. It is
+ * written record by record to a temporary file moved in place when complete, and memory-mapped to read. A snapshot
+ * of another id type is skipped, a truncated one is read up to the last complete record.
+ *
+ * @param <I> the id type
+ */
+@Slf4j
+public class CacheSnapshot<I> {
+
+    private static final int MAGIC = 0x52455053;
+
+    private static final int FORMAT = 3;
+
+    /**
+     * the length marks the end of records
+     */
+    private static final long END = -1L;
+
+    @Getter
+    private final Path file;
+
+    private final ValueCodec idCodec;
+
+    /**
+     * the fingerprint of the id type
+     */
+    private final int idFingerprint;
+
+    /**
+     * @param file the snapshot file
+     * @param idClass the id class
+     */
+    public CacheSnapshot(Path file, Class<I> idClass) {
+        this.file = file;
+        this.idCodec = ValueCodec.of(idClass);
+        if (!idCodec.isSupported()) {
+            throw new IllegalArgumentException("Cannot snapshot the entities with ids of " + idClass.getName());
+        }
+        this.idFingerprint = idClass.getName().hashCode();
+    }
+
+    /**
+     * write the ids to the snapshot, replace the existing one
+     * @param ids the source of the ids, calls the given action on every id
+     * @return the count of ids written
+     * @throws IOException if failed to write
+     */
+    public long write(Consumer<Consumer<I>> ids) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long[] count = {0L};
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(idFingerprint);
+            out.writeLong(System.currentTimeMillis());
+            ids.accept(id -> {
+                ByteArrayDataOutput idOut = ByteStreams.newDataOutput(16);
+                idCodec.write(idOut, id);
+                byte[] idBytes = idOut.toByteArray();
+                ByteArrayDataOutput record = ByteStreams.newDataOutput(idBytes.length + 4);
+                ValueCodec.writeVarLong(record, idBytes.length);
+                record.write(idBytes);
+                try {
+                    out.write(record.toByteArray());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+            ByteArrayDataOutput end = ByteStreams.newDataOutput(1);
+            ValueCodec.writeVarLong(end, END);
+            out.write(end.toByteArray());
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count[0];
+    }
+
+    /**
+     * read the ids of the snapshot in batches
+     * @param batchSize the max count of ids per batch
+     * @param maxAgeMillis the max age of the snapshot to read, non positive for any age
+     * @param batches the consumer of the header and the batches of ids in the written order
+     * @return the header of the snapshot read, null if no snapshot or skipped
+     * @throws IOException if failed to read
+     */
+    public Header read(int batchSize, long maxAgeMillis, BiConsumer<Header, List<I>> batches) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                log.warn("Skip the cache snapshot {} larger than 2GB", file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            Header header;
+            try {
+                if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT || buffer.getInt() != idFingerprint) {
+                    log.warn("Skip the cache snapshot {} of another format or id type", file);
+                    return null;
+                }
+                header = new Header(buffer.getLong());
+            } catch (BufferUnderflowException e) {
+                log.warn("Skip the truncated cache snapshot {}", file);
+                return null;
+            }
+            if (maxAgeMillis > 0L && System.currentTimeMillis() - header.getDumpedAt() > maxAgeMillis) {
+                log.info("Skip the cache snapshot {} dumped {} ms ago", file,
+                    System.currentTimeMillis() - header.getDumpedAt());
+                return null;
+            }
+            List<I> batch = new ArrayList<>();
+            try {
+                for (long length = readVarLong(buffer); END != length; length = readVarLong(buffer)) {
+                    byte[] idBytes = new byte[(int) length];
+                    buffer.get(idBytes);
+                    @SuppressWarnings("unchecked")
+                    I id = (I) idCodec.read(ByteStreams.newDataInput(idBytes));
+                    batch.add(id);
+                    if (batch.size() >= batchSize) {
+                        batches.accept(header, batch);
+                        batch = new ArrayList<>();
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                log.warn("The cache snapshot {} is truncated, read up to the last complete record", file);
+            }
+            if (!batch.isEmpty()) {
+                batches.accept(header, batch);
+            }
+            return header;
+        }
+    }
+
+    /**
+     * delete the snapshot
+     * @throws IOException if failed to delete
+     */
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static long readVarLong(MappedByteBuffer buffer) {
+        long zigzag = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * The header of a snapshot
+     */
+    @Getter
+    public static class Header {
+
+        /**
+         * the epoch millis the snapshot is dumped at
+         */
+        private final long dumpedAt;
+
+        Header(long dumpedAt) {
+            this.dumpedAt = dumpedAt;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded read-through cache of entities keyed by id
+ * <p>
+ * Only found entities are cached. A value loaded before the invalidation of its id is not put back, so a concurrent
+ * write will never be shadowed by the stale value it replaced. The check runs in the compute of the entry, atomic
+ * with the put, see {@link FillVersions}.
+ * <p>
+ * The entities are copied when put and when got, so the callers never share an instance with the cache or each
+ * other, the same as the off-heap tier decoding a new instance on every get.
+ */
+public class EntityCache<I, T> {
+
+    /**
+     * the underlying cache
+     */
+    private final Cache<I, T> cache;
+
+    /**
+     * the versions of the ids to guard the fills
+     */
+    private final FillVersions versions = new FillVersions();
+
+    /**
+     * the function copies an entity to a new instance
+     */
+    private final UnaryOperator<T> copier;
+
+    /**
+     * @param maximumSize the max count of cached entities
+     * @param expireSeconds seconds to expire an entity after written, non positive to never expire
+     * @param copier the function copies an entity to a new instance
+     */
+    public EntityCache(long maximumSize, long expireSeconds, UnaryOperator<T> copier) {
+        this.copier = copier;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats();
+        if (expireSeconds > 0) {
+            builder.expireAfterWrite(expireSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * get the entity with the id, load it on miss
+     * @param id the entity id
+     * @param loader the loader to find the entity
+     * @return the entity or {@literal Optional#empty()} if none found
+     */
+    public Optional<T> get(I id, Function<I, Optional<T>> loader) {
+        T cached = cache.getIfPresent(id);
+        if (null != cached) {
+            return Optional.of(copier.apply(cached));
+        }
+        long version = versions.version(id);
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(entity -> fill(id, entity, version));
+        return loaded;
+    }
+
+    /**
+     * get the entities with the ids, load the missing ones in one call
+     * @param ids the entity ids
+     * @param loader the loader to find the missing entities
+     * @param idGetter the function to get id from an entity
+     * @return found entities in the order of the given ids
+     */
+    public List<T> getAll(Iterable<I> ids, Function<Iterable<I>, Iterable<T>> loader, Function<T, I> idGetter) {
+        Set<I> idSet = Sets.newLinkedHashSet(ids);
+        Map<I, T> found = Maps.newHashMap(Maps.transformValues(cache.getAllPresent(idSet), copier::apply));
+        if (found.size() < idSet.size()) {
+            List<I> missing = Lists.newArrayListWithCapacity(idSet.size() - found.size());
+            for (I id : idSet) {
+                if (!found.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+            found.putAll(loadAll(missing, loader, idGetter));
+        }
+        List<T> result = Lists.newArrayListWithCapacity(found.size());
+        for (I id : idSet) {
+            T entity = found.get(id);
+            if (null != entity) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * load the entities with the ids and put them, skip the ids invalidated while loading
+     * @param ids the entity ids
+     * @param loader the loader to find the entities
+     * @param idGetter the function to get id from an entity
+     * @return the loaded entities by id
+     */
+    public Map<I, T> loadAll(Iterable<I> ids, Function<Iterable<I>, Iterable<T>> loader, Function<T, I> idGetter) {
+        Map<I, Long> loadVersions = Maps.newHashMap();
+        for (I id : ids) {
+            loadVersions.put(id, versions.version(id));
+        }
+        Map<I, T> loaded = Maps.newHashMapWithExpectedSize(loadVersions.size());
+        for (T entity : loader.apply(ids)) {
+            I id = idGetter.apply(entity);
+            loaded.put(id, entity);
+            Long version = loadVersions.get(id);
+            if (null != version) {
+                fill(id, entity, version);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * the live view of the cached entities by id, the entities are not copied and must not be modified
+     * @return the entities by id
+     */
+    public Map<I, T> asMap() {
+        return cache.asMap();
+    }
+
+    /**
+     * invalidate the cached entity
+     * @param id the entity id
+     */
+    public void invalidate(I id) {
+        versions.bump(id);
+        cache.invalidate(id);
+    }
+
+    /**
+     * invalidate the cached entities
+     * @param ids the entity ids
+     */
+    public void invalidateAll(Iterable<I> ids) {
+        for (I id : ids) {
+            versions.bump(id);
+        }
+        cache.invalidateAll(ids);
+    }
+
+    /**
+     * invalidate all cached entities
+     */
+    public void invalidateAll() {
+        versions.bumpAll();
+        cache.invalidateAll();
+    }
+
+    /**
+     * the hit/miss/eviction counters
+     * @return the cache stats
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * the approximate count of cached entities
+     * @return the entity count
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * put a copy of the loaded entity unless its id is invalidated since the version taken, the check holds the lock
+     * of the entry the invalidation removes it with
+     */
+    private void fill(I id, T entity, long version) {
+        cache.asMap().compute(id, (key, cached) -> versions.unchanged(key, version) ? copier.apply(entity) : cached);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+/**
+ * The compact binary codec of entities
+ * @param <T> the entity type
+ */
+public interface EntityCodec<T> {
+
+    /**
+     * Get the codec of the readable and writable properties of the entity class, built once and cached
+     * @param entityClass the entity class
+     * @param <T> the entity type
+     * @return the codec
+     */
+    static <T> EntityCodec<T> of(Class<T> entityClass) {
+        return PropertyCodec.get(entityClass);
+    }
+
+    /**
+     * Encode the entity
+     * @param entity the entity
+     * @return the encoded bytes
+     * @throws IllegalArgumentException if some property value cannot be encoded
+     */
+    byte[] encode(T entity);
+
+    /**
+     * Decode a new entity
+     * @param bytes the encoded bytes
+     * @return the entity
+     */
+    T decode(byte[] bytes);
+}
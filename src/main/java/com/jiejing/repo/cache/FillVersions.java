@@ -0,0 +1,72 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The versions guarding the cache fills against the concurrent invalidations
+ * <p>
+ * A fill takes the version of the id before loading, and puts the loaded entity only if the version is unchanged.
+ * Invalidating an id bumps the version of its stripe and invalidating all bumps every version, so a fill is only
+ * skipped when an id of the same stripe is invalidated meanwhile. The check must run under the same lock the
+ * entry is removed with, after the version is bumped, so it is atomic with the put.
+ */
+final class FillVersions {
+
+    private static final int STRIPES = 4096;
+
+    private final AtomicLongArray stripes = new AtomicLongArray(STRIPES);
+
+    /**
+     * bumped on invalidating all
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * the version of the id to take before loading
+     */
+    long version(Object id) {
+        return epoch.get() + stripes.get(stripeOf(id));
+    }
+
+    /**
+     * if the id is not invalidated since the version taken
+     */
+    boolean unchanged(Object id, long version) {
+        return version(id) == version;
+    }
+
+    /**
+     * bump the version of the id ahead of removing its entry
+     */
+    void bump(Object id) {
+        stripes.incrementAndGet(stripeOf(id));
+    }
+
+    /**
+     * bump the versions of all ids ahead of clearing the entries
+     */
+    void bumpAll() {
+        epoch.incrementAndGet();
+    }
+
+    private static int stripeOf(Object id) {
+        int hash = id.hashCode();
+        return (hash ^ hash >>> 16) & (STRIPES - 1);
+    }
+}
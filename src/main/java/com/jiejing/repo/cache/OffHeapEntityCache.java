@@ -0,0 +1,310 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded read-through cache of entities keyed by id, holding the encoded entities in direct buffers
+ * <p>
+ * Entities are encoded by the {@link EntityCodec} of the entity class, and decoded into new instances on every
+ * hit, so no entity is held on the heap. Integral ids are the keys themselves, other ids are encoded and keyed by
+ * their 64-bit hash. Entity classes with properties of unsupported types are rejected on creation, entities that
+ * still cannot be encoded or are larger than a slot are not cached. Invalidation
+ * follows {@link EntityCache}: a value loaded before the invalidation of its id is not put back, checked under the
+ * segment lock of the put.
+ *
+ * @param <I> the id type
+ * @param <T> the entity type
+ */
+@Slf4j
+public class OffHeapEntityCache<I, T> {
+
+    private static final byte[] NO_ID_BYTES = new byte[0];
+
+    private final OffHeapStore store;
+
+    private final Class<I> idClass;
+
+    private final EntityCodec<T> codec;
+
+    /**
+     * the codec of non-integral ids, null if the ids are integral
+     */
+    private final ValueCodec idCodec;
+
+    /**
+     * the versions of the ids to guard the fills
+     */
+    private final FillVersions versions = new FillVersions();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * the count of entities not cached for failed encoding or too large
+     */
+    private final LongAdder rejects = new LongAdder();
+
+    /**
+     * whether any entity failed to encode, only the first failure is warned
+     */
+    private final AtomicBoolean encodeFailed = new AtomicBoolean();
+
+    /**
+     * @param idClass the id class
+     * @param entityClass the entity class
+     * @param maximumSize the max count of cached entities
+     * @param slotBytes the bytes reserved per entity
+     * @param expireSeconds seconds to expire an entity after written, non positive to never expire
+     * @throws IllegalArgumentException if the ids or some entity properties are of the types cannot be encoded
+     */
+    public OffHeapEntityCache(Class<I> idClass, Class<T> entityClass, long maximumSize, int slotBytes,
+        long expireSeconds) {
+        boolean integral = idClass == Long.class || idClass == Integer.class || idClass == Short.class;
+        this.idCodec = integral ? null : ValueCodec.of(idClass);
+        if (null != idCodec && !idCodec.isSupported()) {
+            throw new IllegalArgumentException("Cannot cache off-heap the entities with ids of " + idClass.getName());
+        }
+        PropertyCodec<T> propertyCodec = PropertyCodec.get(entityClass);
+        List<String> unsupported = propertyCodec.unsupportedProperties();
+        if (!unsupported.isEmpty()) {
+            throw new IllegalArgumentException("Cannot cache off-heap the entities of " + entityClass.getName()
+                + " with the properties of unsupported types " + unsupported);
+        }
+        this.store = new OffHeapStore(maximumSize, slotBytes, TimeUnit.SECONDS.toMillis(expireSeconds));
+        this.idClass = idClass;
+        this.codec = propertyCodec;
+    }
+
+    /**
+     * get the entity with the id, load it on miss
+     * @param id the entity id
+     * @param loader the loader to find the entity
+     * @return the entity or {@literal Optional#empty()} if none found
+     */
+    public Optional<T> get(I id, Function<I, Optional<T>> loader) {
+        byte[] idBytes = idBytes(id);
+        T cached = decode(store.get(keyOf(id, idBytes), idBytes));
+        if (null != cached) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        long version = versions.version(id);
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(entity -> fill(id, idBytes, entity, version));
+        return loaded;
+    }
+
+    /**
+     * get the entities with the ids, load the missing ones in one call
+     * @param ids the entity ids
+     * @param loader the loader to find the missing entities
+     * @param idGetter the function to get id from an entity
+     * @return found entities in the order of the given ids
+     */
+    public List<T> getAll(Iterable<I> ids, Function<Iterable<I>, Iterable<T>> loader, Function<T, I> idGetter) {
+        Set<I> idSet = Sets.newLinkedHashSet(ids);
+        Map<I, T> found = Maps.newHashMapWithExpectedSize(idSet.size());
+        List<I> missing = Lists.newArrayList();
+        for (I id : idSet) {
+            byte[] idBytes = idBytes(id);
+            T cached = decode(store.get(keyOf(id, idBytes), idBytes));
+            if (null != cached) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        hits.add(found.size());
+        misses.add(missing.size());
+        if (!missing.isEmpty()) {
+            found.putAll(loadAll(missing, loader, idGetter));
+        }
+        List<T> result = Lists.newArrayListWithCapacity(found.size());
+        for (I id : idSet) {
+            T entity = found.get(id);
+            if (null != entity) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * load the entities with the ids and put them, skip the ids invalidated while loading
+     * @param ids the entity ids
+     * @param loader the loader to find the entities
+     * @param idGetter the function to get id from an entity
+     * @return the loaded entities by id
+     */
+    public Map<I, T> loadAll(Iterable<I> ids, Function<Iterable<I>, Iterable<T>> loader, Function<T, I> idGetter) {
+        Map<I, Long> loadVersions = Maps.newHashMap();
+        for (I id : ids) {
+            loadVersions.put(id, versions.version(id));
+        }
+        Map<I, T> loaded = Maps.newHashMapWithExpectedSize(loadVersions.size());
+        for (T entity : loader.apply(ids)) {
+            I id = idGetter.apply(entity);
+            loaded.put(id, entity);
+            Long version = loadVersions.get(id);
+            if (null != version) {
+                fill(id, idBytes(id), entity, version);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * visit the ids of the cached entities
+     * @param action the action on the id
+     */
+    public void forEachId(Consumer<I> action) {
+        store.forEach((key, idBytes, value) -> action.accept(idOf(key, idBytes)));
+    }
+
+    /**
+     * invalidate the cached entity
+     * @param id the entity id
+     */
+    public void invalidate(I id) {
+        versions.bump(id);
+        store.remove(keyOf(id, idBytes(id)));
+    }
+
+    /**
+     * invalidate the cached entities
+     * @param ids the entity ids
+     */
+    public void invalidateAll(Iterable<I> ids) {
+        for (I id : ids) {
+            versions.bump(id);
+            store.remove(keyOf(id, idBytes(id)));
+        }
+    }
+
+    /**
+     * invalidate all cached entities
+     */
+    public void invalidateAll() {
+        versions.bumpAll();
+        store.clear();
+    }
+
+    /**
+     * the hit/miss/eviction counters, the load counters are not recorded
+     * @return the cache stats
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0L, 0L, 0L, store.evictionCount());
+    }
+
+    /**
+     * the count of entities not cached for failed encoding or larger than a slot
+     * @return the reject count
+     */
+    public long rejectCount() {
+        return rejects.sum();
+    }
+
+    /**
+     * the count of cached entities
+     * @return the entity count
+     */
+    public long size() {
+        return store.size();
+    }
+
+    /**
+     * the bytes reserved off-heap
+     * @return the capacity in bytes
+     */
+    public long capacityBytes() {
+        return store.capacityBytes();
+    }
+
+    /**
+     * put the loaded entity unless its id is invalidated since the version taken
+     */
+    private void fill(I id, byte[] idBytes, T entity, long version) {
+        byte[] value;
+        try {
+            value = codec.encode(entity);
+        } catch (RuntimeException e) {
+            if (encodeFailed.compareAndSet(false, true)) {
+                log.warn("Cannot encode the entity with id {}, skip caching, the later failures are logged at debug",
+                    id, e);
+            } else {
+                log.debug("Cannot encode the entity with id {}, skip caching", id, e);
+            }
+            rejects.increment();
+            store.remove(keyOf(id, idBytes));
+            return;
+        }
+        if (!store.put(keyOf(id, idBytes), idBytes, value, () -> versions.unchanged(id, version))) {
+            rejects.increment();
+        }
+    }
+
+    private T decode(byte[] value) {
+        return null != value ? codec.decode(value) : null;
+    }
+
+    private byte[] idBytes(I id) {
+        if (null == idCodec) {
+            return NO_ID_BYTES;
+        }
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(16);
+        idCodec.write(out, id);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private I idOf(long key, byte[] idBytes) {
+        if (null != idCodec) {
+            return (I) idCodec.read(ByteStreams.newDataInput(idBytes));
+        }
+        if (idClass == Integer.class) {
+            return (I) Integer.valueOf((int) key);
+        } else if (idClass == Short.class) {
+            return (I) Short.valueOf((short) key);
+        }
+        return (I) Long.valueOf(key);
+    }
+
+    private long keyOf(I id, byte[] idBytes) {
+        return null == idCodec ? ((Number) id).longValue() : Hashing.murmur3_128().hashBytes(idBytes).asLong();
+    }
+}
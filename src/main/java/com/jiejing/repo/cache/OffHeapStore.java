@@ -0,0 +1,406 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The store of byte records keyed by long in fixed-size slots of direct buffers
+ * <p>
+ * The store is split into segments guarded by their own locks. Each segment maps keys to slots with an open
+ * addressing index of primitive arrays, and evicts with the CLOCK algorithm when no slot is free: a hit marks the
+ * slot referenced, the hand clears the mark of a referenced slot and evicts the first slot not referenced. A
+ * record holds the bytes of the original id to tell the colliding keys apart, empty if the key is the id itself.
+ */
+final class OffHeapStore {
+
+    /**
+     * the max bytes of a segment buffer
+     */
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final int MIN_SEGMENTS = 16;
+
+    private static final int MIN_SLOT_BYTES = 16;
+
+    private final Segment[] segments;
+
+    private final int slotBytes;
+
+    /**
+     * @param maximumSize the max count of records
+     * @param slotBytes the bytes of a slot, records larger than the slot are not stored
+     * @param expireMillis millis to expire a record after stored, non positive to never expire
+     */
+    OffHeapStore(long maximumSize, int slotBytes, long expireMillis) {
+        if (maximumSize <= 0L || slotBytes < MIN_SLOT_BYTES) {
+            throw new IllegalArgumentException("Invalid size " + maximumSize + " or slot bytes " + slotBytes);
+        }
+        int count = MIN_SEGMENTS;
+        while ((long) count * MAX_SEGMENT_BYTES < maximumSize * slotBytes) {
+            count <<= 1;
+        }
+        int slots = (int) Math.max(1L, (maximumSize + count - 1) / count);
+        this.slotBytes = slotBytes;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(slots, slotBytes, expireMillis);
+        }
+    }
+
+    /**
+     * get the value bytes of the record
+     * @param key the key
+     * @param idBytes the id bytes to match
+     * @return the value bytes, null if absent or expired
+     */
+    byte[] get(long key, byte[] idBytes) {
+        long hash = mix(key);
+        return segmentOf(hash).get(key, (int) hash, idBytes);
+    }
+
+    /**
+     * put the record if the guard passes, replace the record of the same key
+     * @param key the key
+     * @param idBytes the id bytes
+     * @param value the value bytes
+     * @param guard checked under the segment lock right before the put, the record is skipped if false
+     * @return false if the record is larger than a slot and not stored
+     */
+    boolean put(long key, byte[] idBytes, byte[] value, BooleanSupplier guard) {
+        long hash = mix(key);
+        Segment segment = segmentOf(hash);
+        if (2 + idBytes.length + value.length > slotBytes || idBytes.length > 0xFFFF) {
+            segment.remove(key, (int) hash);
+            return false;
+        }
+        segment.put(key, (int) hash, idBytes, value, guard);
+        return true;
+    }
+
+    void remove(long key) {
+        long hash = mix(key);
+        segmentOf(hash).remove(key, (int) hash);
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * visit the records not expired, segment by segment, out of the segment locks
+     * @param visitor the visitor of the key, id bytes and value bytes
+     */
+    void forEach(RecordVisitor visitor) {
+        List<Object[]> records = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.copyTo(records);
+            for (Object[] record : records) {
+                visitor.visit((Long) record[0], (byte[]) record[1], (byte[]) record[2]);
+            }
+            records.clear();
+        }
+    }
+
+    interface RecordVisitor {
+        void visit(long key, byte[] idBytes, byte[] value);
+    }
+
+    /**
+     * the count of stored records
+     */
+    long size() {
+        long size = 0L;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * the count of records evicted for space
+     */
+    long evictionCount() {
+        long evictions = 0L;
+        for (Segment segment : segments) {
+            evictions += segment.evictions();
+        }
+        return evictions;
+    }
+
+    /**
+     * the bytes reserved off-heap
+     */
+    long capacityBytes() {
+        long bytes = 0L;
+        for (Segment segment : segments) {
+            bytes += segment.data.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * the segment picked by the high bits, the index slot by the low bits
+     */
+    private Segment segmentOf(long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * the finalizer of murmur3 to spread the sequential keys
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+
+        private static final int EMPTY = -1;
+
+        /**
+         * the records, a record is the unsigned short id length, the id bytes and the value bytes
+         */
+        private final ByteBuffer data;
+
+        /**
+         * the view to copy bytes in and out under the lock
+         */
+        private final ByteBuffer view;
+
+        private final int slotBytes;
+
+        private final long expireMillis;
+
+        /**
+         * the index keys and slots, EMPTY slot for no entry
+         */
+        private final long[] indexKeys;
+
+        private final int[] indexSlots;
+
+        private final int indexMask;
+
+        /**
+         * the key, record length, expiration and reference mark of the slots
+         */
+        private final long[] slotKeys;
+
+        private final int[] lengths;
+
+        private final long[] expireAt;
+
+        private final boolean[] referenced;
+
+        /**
+         * the stack of free slots
+         */
+        private final int[] free;
+
+        private int freeCount;
+
+        private int hand;
+
+        private long evictions;
+
+        Segment(int slots, int slotBytes, long expireMillis) {
+            this.data = ByteBuffer.allocateDirect(slots * slotBytes);
+            this.view = data.duplicate();
+            this.slotBytes = slotBytes;
+            this.expireMillis = expireMillis;
+            int indexSize = Integer.highestOneBit(Math.max(2, slots * 2 - 1)) << 1;
+            this.indexKeys = new long[indexSize];
+            this.indexSlots = new int[indexSize];
+            this.indexMask = indexSize - 1;
+            this.slotKeys = new long[slots];
+            this.lengths = new int[slots];
+            this.expireAt = new long[slots];
+            this.referenced = new boolean[slots];
+            this.free = new int[slots];
+            clear();
+        }
+
+        synchronized byte[] get(long key, int hash, byte[] idBytes) {
+            int index = find(key, hash);
+            if (index < 0) {
+                return null;
+            }
+            int slot = indexSlots[index];
+            if (expireMillis > 0L && System.currentTimeMillis() >= expireAt[slot]) {
+                release(index);
+                return null;
+            }
+            int base = slot * slotBytes;
+            int idLength = data.getShort(base) & 0xFFFF;
+            if (idLength != idBytes.length) {
+                return null;
+            }
+            for (int i = 0; i < idLength; i++) {
+                if (data.get(base + 2 + i) != idBytes[i]) {
+                    return null;
+                }
+            }
+            referenced[slot] = true;
+            byte[] value = new byte[lengths[slot] - 2 - idLength];
+            view.position(base + 2 + idLength);
+            view.get(value);
+            return value;
+        }
+
+        synchronized void put(long key, int hash, byte[] idBytes, byte[] value, BooleanSupplier guard) {
+            if (!guard.getAsBoolean()) {
+                return;
+            }
+            int index = find(key, hash);
+            int slot;
+            if (index >= 0) {
+                slot = indexSlots[index];
+            } else {
+                slot = freeCount > 0 ? free[--freeCount] : evict();
+                // the eviction may shift the index entries
+                index = -1 - find(key, hash);
+                indexKeys[index] = key;
+                indexSlots[index] = slot;
+                slotKeys[slot] = key;
+                referenced[slot] = false;
+            }
+            int base = slot * slotBytes;
+            view.position(base);
+            view.putShort((short) idBytes.length);
+            view.put(idBytes);
+            view.put(value);
+            lengths[slot] = 2 + idBytes.length + value.length;
+            expireAt[slot] = expireMillis > 0L ? System.currentTimeMillis() + expireMillis : 0L;
+        }
+
+        synchronized void remove(long key, int hash) {
+            int index = find(key, hash);
+            if (index >= 0) {
+                release(index);
+            }
+        }
+
+        synchronized void clear() {
+            Arrays.fill(indexSlots, EMPTY);
+            Arrays.fill(referenced, false);
+            for (int i = 0; i < free.length; i++) {
+                free[i] = free.length - 1 - i;
+            }
+            freeCount = free.length;
+            hand = 0;
+        }
+
+        synchronized void copyTo(List<Object[]> records) {
+            long now = System.currentTimeMillis();
+            for (int index = 0; index <= indexMask; index++) {
+                int slot = indexSlots[index];
+                if (EMPTY == slot || expireMillis > 0L && now >= expireAt[slot]) {
+                    continue;
+                }
+                int base = slot * slotBytes;
+                byte[] idBytes = new byte[data.getShort(base) & 0xFFFF];
+                byte[] value = new byte[lengths[slot] - 2 - idBytes.length];
+                view.position(base + 2);
+                view.get(idBytes);
+                view.get(value);
+                records.add(new Object[] {indexKeys[index], idBytes, value});
+            }
+        }
+
+        synchronized int size() {
+            return free.length - freeCount;
+        }
+
+        synchronized long evictions() {
+            return evictions;
+        }
+
+        /**
+         * find the index entry of the key
+         * @return the index of the entry, or -1 - the index to insert if absent
+         */
+        private int find(long key, int hash) {
+            int index = hash & indexMask;
+            while (EMPTY != indexSlots[index]) {
+                if (indexKeys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & indexMask;
+            }
+            return -1 - index;
+        }
+
+        /**
+         * remove the index entry and free its slot
+         */
+        private void release(int index) {
+            free[freeCount++] = indexSlots[index];
+            delete(index);
+        }
+
+        /**
+         * sweep the clock hand to the first slot not referenced, and take the slot from its key
+         */
+        private int evict() {
+            while (true) {
+                int slot = hand;
+                hand = (hand + 1) % slotKeys.length;
+                if (referenced[slot]) {
+                    referenced[slot] = false;
+                    continue;
+                }
+                long key = slotKeys[slot];
+                delete(find(key, (int) mix(key)));
+                evictions++;
+                return slot;
+            }
+        }
+
+        /**
+         * delete the index entry by shifting back the following entries of the probe sequence
+         */
+        private void delete(int index) {
+            int hole = index;
+            int next = index;
+            while (true) {
+                next = (next + 1) & indexMask;
+                if (EMPTY == indexSlots[next]) {
+                    break;
+                }
+                int home = (int) mix(indexKeys[next]) & indexMask;
+                // keep the entry if its home lies cyclically in (hole, next]
+                boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+                if (!stays) {
+                    indexKeys[hole] = indexKeys[next];
+                    indexSlots[hole] = indexSlots[next];
+                    hole = next;
+                }
+            }
+            indexSlots[hole] = EMPTY;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.jiejing.repo.accessor.EntityAccessor;
+import java.beans.PropertyDescriptor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.springframework.beans.BeanUtils;
+
+/**
+ * The codec of the readable and writable properties in name order
+ * <p>
+ * An entity is encoded as the bitmap of the null properties followed by the non-null property values, see
+ * {@link ValueCodec} for the value encodings.
+ */
+final class PropertyCodec<T> implements EntityCodec<T> {
+
+    private static final ClassValue<PropertyCodec<?>> CODECS = new ClassValue<PropertyCodec<?>>() {
+        @Override
+        protected PropertyCodec<?> computeValue(Class<?> type) {
+            return new PropertyCodec<>(type);
+        }
+    };
+
+    private final EntityAccessor<T> accessor;
+
+    private final String[] names;
+
+    private final ValueCodec[] codecs;
+
+    /**
+     * the fingerprint of the property names and types, differs if the encoded layout changes
+     */
+    private final long fingerprint;
+
+    private PropertyCodec(Class<T> entityClass) {
+        this.accessor = EntityAccessor.of(entityClass);
+        List<PropertyDescriptor> properties = new ArrayList<>();
+        for (PropertyDescriptor pd : BeanUtils.getPropertyDescriptors(entityClass)) {
+            if (null != pd.getReadMethod() && null != pd.getWriteMethod()) {
+                properties.add(pd);
+            }
+        }
+        properties.sort(Comparator.comparing(PropertyDescriptor::getName));
+        this.names = new String[properties.size()];
+        this.codecs = new ValueCodec[properties.size()];
+        Hasher hasher = Hashing.murmur3_128().newHasher().putString(entityClass.getName(), StandardCharsets.UTF_8);
+        for (int i = 0; i < names.length; i++) {
+            names[i] = properties.get(i).getName();
+            codecs[i] = ValueCodec.of(properties.get(i).getPropertyType());
+            hasher.putString(names[i], StandardCharsets.UTF_8)
+                .putString(properties.get(i).getPropertyType().getName(), StandardCharsets.UTF_8);
+        }
+        this.fingerprint = hasher.hash().asLong();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> PropertyCodec<T> get(Class<T> entityClass) {
+        return (PropertyCodec<T>) CODECS.get(entityClass);
+    }
+
+    long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * the names of the properties of the types the values cannot be encoded of, every entity with one of them set
+     * fails to encode
+     * @return the property names
+     */
+    List<String> unsupportedProperties() {
+        List<String> unsupported = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            if (!codecs[i].isSupported()) {
+                unsupported.add(names[i]);
+            }
+        }
+        return unsupported;
+    }
+
+    @Override
+    public byte[] encode(T entity) {
+        Object[] values = new Object[names.length];
+        byte[] nulls = new byte[(names.length + 7) >>> 3];
+        for (int i = 0; i < names.length; i++) {
+            values[i] = accessor.getProperty(entity, names[i]);
+            if (null == values[i]) {
+                nulls[i >>> 3] |= 1 << (i & 7);
+            }
+        }
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(64);
+        out.write(nulls);
+        for (int i = 0; i < names.length; i++) {
+            if (null != values[i]) {
+                codecs[i].write(out, values[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public T decode(byte[] bytes) {
+        ByteArrayDataInput in = ByteStreams.newDataInput(bytes);
+        byte[] nulls = new byte[(names.length + 7) >>> 3];
+        in.readFully(nulls);
+        T entity = accessor.newInstance();
+        for (int i = 0; i < names.length; i++) {
+            if ((nulls[i >>> 3] & (1 << (i & 7))) == 0) {
+                accessor.setProperty(entity, names[i], codecs[i].read(in));
+            }
+        }
+        return entity;
+    }
+}
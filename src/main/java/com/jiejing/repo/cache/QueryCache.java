@@ -0,0 +1,141 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of query results validated by the table version
+ * <p>
+ * A result is cached with the version of the table it was read at, and is only served while the version stays the
+ * same, so any write to the table invalidates all the results without tracking the rows they depend on. A result
+ * loaded across a write is not cached. The cached results are shared by callers and should not be modified.
+ */
+public class QueryCache {
+
+    /**
+     * the underlying cache
+     */
+    private final Cache<Object, Versioned> cache;
+
+    /**
+     * the write version of the table
+     */
+    private final AtomicLong version;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * @param maximumSize the max count of cached results
+     * @param expireSeconds seconds to expire a result after written, non positive to never expire
+     * @param version the write version of the table
+     */
+    public QueryCache(long maximumSize, long expireSeconds, AtomicLong version) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .recordStats();
+        if (expireSeconds > 0) {
+            builder.expireAfterWrite(expireSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+        this.version = version;
+    }
+
+    /**
+     * get the result of the key at the current table version, load it on miss
+     * @param key the key of the query, null to load without caching
+     * @param loader the loader to run the query
+     * @param <R> the result type
+     * @return the result
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(Object key, Supplier<R> loader) {
+        if (null == key) {
+            return loader.get();
+        }
+        long loadVersion = version.get();
+        Versioned cached = cache.getIfPresent(key);
+        if (null != cached && cached.version == loadVersion) {
+            hits.increment();
+            return (R) cached.value;
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        R loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException | Error e) {
+            loadFailures.increment();
+            throw e;
+        } finally {
+            loadNanos.add(System.nanoTime() - start);
+        }
+        if (null != loaded && loadVersion == version.get()) {
+            cache.put(key, new Versioned(loadVersion, loaded));
+        }
+        return loaded;
+    }
+
+    /**
+     * drop all the cached results
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * the hit/miss/eviction counters, a result of an older version is counted as a miss
+     * @return the stats
+     */
+    public CacheStats stats() {
+        long missCount = misses.sum();
+        long failureCount = loadFailures.sum();
+        return new CacheStats(hits.sum(), missCount, missCount - failureCount, failureCount, loadNanos.sum(),
+            cache.stats().evictionCount());
+    }
+
+    /**
+     * the approximate count of cached results
+     * @return the count
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private static class Versioned {
+        private final long version;
+
+        private final Object value;
+
+        private Versioned(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import com.jiejing.repo.utils.FutureUtil;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A single-flight group shares one in-flight execution among concurrent calls of the same key
+ * <p>
+ * The calls arriving while an execution of the key is in flight wait for it and get its result or failure, the
+ * result is not kept after the execution completes. The shared result is returned to every caller as is, so it
+ * should not be modified.
+ *
+ * @param <K> the key type
+ */
+public class SingleFlight<K> {
+    private final ConcurrentMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * execute the call or join the in-flight execution of the same key
+     * @param key the key, null to execute without sharing
+     * @param call the call
+     * @param <R> the result type
+     * @return the result of the call
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R execute(K key, Supplier<R> call) {
+        if (null == key) {
+            return call.get();
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (null != existing) {
+            shared.increment();
+            return (R) FutureUtil.join(existing);
+        }
+
+        executions.increment();
+        try {
+            R result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * the count of executions started with a key
+     */
+    public long executions() {
+        return executions.sum();
+    }
+
+    /**
+     * the count of calls joined an in-flight execution
+     */
+    public long shared() {
+        return shared.sum();
+    }
+}
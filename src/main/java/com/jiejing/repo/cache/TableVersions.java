@@ -0,0 +1,43 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The registry of write versions per table
+ * <p>
+ * Every write to a table bumps its version, so results read from the table can be validated by comparing the
+ * version they were read at. The versions are shared by all the services of the same table in the process.
+ */
+public final class TableVersions {
+    private static final ConcurrentMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+    private TableVersions() {
+    }
+
+    /**
+     * the version counter of the table
+     * @param schema the schema/database of the table
+     * @param table the table name
+     * @return the counter
+     */
+    public static AtomicLong of(String schema, String table) {
+        return VERSIONS.computeIfAbsent(schema + "." + table, key -> new AtomicLong());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.cache;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.primitives.Primitives;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The binary codec of values of a type
+ * <p>
+ * Integers are written as zigzag varints, strings as UTF-8 bytes with the varint length, enums by ordinal and the
+ * common value types by their components. Dates are tagged with their type, so the java.sql subtypes decode as
+ * they were and a timestamp keeps its nanos. Values of other types, or of other subtypes of the non-final
+ * supported types, fail to write rather than being serialized or narrowed, so nothing but the listed types is ever
+ * decoded from the off-heap cache or a snapshot file.
+ */
+final class ValueCodec {
+
+    /**
+     * the tags of the date types
+     */
+    private static final byte DATE = 0;
+
+    private static final byte SQL_DATE = 1;
+
+    private static final byte SQL_TIME = 2;
+
+    private static final byte SQL_TIMESTAMP = 3;
+
+    private final BiConsumer<ByteArrayDataOutput, Object> writer;
+
+    private final Function<ByteArrayDataInput, Object> reader;
+
+    /**
+     * whether the type is supported
+     */
+    private final boolean supported;
+
+    private ValueCodec(BiConsumer<ByteArrayDataOutput, Object> writer, Function<ByteArrayDataInput, Object> reader) {
+        this(writer, reader, true);
+    }
+
+    private ValueCodec(BiConsumer<ByteArrayDataOutput, Object> writer, Function<ByteArrayDataInput, Object> reader,
+        boolean supported) {
+        this.writer = writer;
+        this.reader = reader;
+        this.supported = supported;
+    }
+
+    void write(ByteArrayDataOutput out, Object value) {
+        writer.accept(out, value);
+    }
+
+    Object read(ByteArrayDataInput in) {
+        return reader.apply(in);
+    }
+
+    /**
+     * whether the values of the type can be written
+     * @return false if every write fails
+     */
+    boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * the codec of the type
+     * @param type the value type
+     * @return the codec, fails to write if the type is not supported
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static ValueCodec of(Class<?> type) {
+        Class<?> boxed = Primitives.wrap(type);
+        if (boxed == Boolean.class) {
+            return new ValueCodec((out, value) -> out.writeBoolean((Boolean) value), ByteArrayDataInput::readBoolean);
+        } else if (boxed == Byte.class) {
+            return new ValueCodec((out, value) -> out.writeByte((Byte) value), ByteArrayDataInput::readByte);
+        } else if (boxed == Short.class) {
+            return new ValueCodec((out, value) -> writeVarLong(out, (Short) value), in -> (short) readVarLong(in));
+        } else if (boxed == Character.class) {
+            return new ValueCodec((out, value) -> out.writeChar((Character) value), ByteArrayDataInput::readChar);
+        } else if (boxed == Integer.class) {
+            return new ValueCodec((out, value) -> writeVarLong(out, (Integer) value), in -> (int) readVarLong(in));
+        } else if (boxed == Long.class) {
+            return new ValueCodec((out, value) -> writeVarLong(out, (Long) value), ValueCodec::readVarLong);
+        } else if (boxed == Float.class) {
+            return new ValueCodec((out, value) -> out.writeFloat((Float) value), ByteArrayDataInput::readFloat);
+        } else if (boxed == Double.class) {
+            return new ValueCodec((out, value) -> out.writeDouble((Double) value), ByteArrayDataInput::readDouble);
+        } else if (type == String.class) {
+            return new ValueCodec((out, value) -> writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8)),
+                in -> new String(readBytes(in), StandardCharsets.UTF_8));
+        } else if (type == byte[].class) {
+            return new ValueCodec((out, value) -> writeBytes(out, (byte[]) value), ValueCodec::readBytes);
+        } else if (type.isEnum()) {
+            Object[] constants = type.getEnumConstants();
+            return new ValueCodec((out, value) -> writeVarLong(out, ((Enum) value).ordinal()),
+                in -> constants[(int) readVarLong(in)]);
+        } else if (type == Date.class || type == java.sql.Date.class || type == Time.class
+            || type == Timestamp.class) {
+            return new ValueCodec(ValueCodec::writeDate, ValueCodec::readDate);
+        } else if (type == Instant.class) {
+            return new ValueCodec((out, value) -> {
+                writeVarLong(out, ((Instant) value).getEpochSecond());
+                writeVarLong(out, ((Instant) value).getNano());
+            }, in -> Instant.ofEpochSecond(readVarLong(in), readVarLong(in)));
+        } else if (type == LocalDate.class) {
+            return new ValueCodec((out, value) -> writeVarLong(out, ((LocalDate) value).toEpochDay()),
+                in -> LocalDate.ofEpochDay(readVarLong(in)));
+        } else if (type == LocalTime.class) {
+            return new ValueCodec((out, value) -> writeVarLong(out, ((LocalTime) value).toNanoOfDay()),
+                in -> LocalTime.ofNanoOfDay(readVarLong(in)));
+        } else if (type == LocalDateTime.class) {
+            return new ValueCodec((out, value) -> {
+                writeVarLong(out, ((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(out, ((LocalDateTime) value).getNano());
+            }, in -> LocalDateTime.ofEpochSecond(readVarLong(in), (int) readVarLong(in), ZoneOffset.UTC));
+        } else if (type == BigInteger.class) {
+            return new ValueCodec((out, value) -> writeBytes(out, ((BigInteger) exactly(type, value)).toByteArray()),
+                in -> new BigInteger(readBytes(in)));
+        } else if (type == BigDecimal.class) {
+            return new ValueCodec((out, value) -> {
+                exactly(type, value);
+                writeVarLong(out, ((BigDecimal) value).scale());
+                writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+            }, in -> {
+                int scale = (int) readVarLong(in);
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            });
+        } else if (type == UUID.class) {
+            return new ValueCodec((out, value) -> {
+                out.writeLong(((UUID) value).getMostSignificantBits());
+                out.writeLong(((UUID) value).getLeastSignificantBits());
+            }, in -> new UUID(in.readLong(), in.readLong()));
+        }
+        return new ValueCodec((out, value) -> {
+            throw new IllegalArgumentException("Cannot encode the value of the unsupported type " + type.getName());
+        }, in -> {
+            throw new IllegalStateException("Cannot decode the value of the unsupported type " + type.getName());
+        }, false);
+    }
+
+    /**
+     * write the date with the tag of its type, a timestamp with its nanos
+     * @throws IllegalArgumentException if of another subtype
+     */
+    private static void writeDate(ByteArrayDataOutput out, Object value) {
+        Class<?> type = value.getClass();
+        if (type == Date.class) {
+            out.writeByte(DATE);
+        } else if (type == java.sql.Date.class) {
+            out.writeByte(SQL_DATE);
+        } else if (type == Time.class) {
+            out.writeByte(SQL_TIME);
+        } else if (type == Timestamp.class) {
+            out.writeByte(SQL_TIMESTAMP);
+        } else {
+            exactly(Date.class, value);
+        }
+        writeVarLong(out, ((Date) value).getTime());
+        if (type == Timestamp.class) {
+            writeVarLong(out, ((Timestamp) value).getNanos());
+        }
+    }
+
+    private static Date readDate(ByteArrayDataInput in) {
+        byte tag = in.readByte();
+        long millis = readVarLong(in);
+        switch (tag) {
+            case DATE:
+                return new Date(millis);
+            case SQL_DATE:
+                return new java.sql.Date(millis);
+            case SQL_TIME:
+                return new Time(millis);
+            case SQL_TIMESTAMP:
+                Timestamp timestamp = new Timestamp(millis);
+                timestamp.setNanos((int) readVarLong(in));
+                return timestamp;
+            default:
+                throw new IllegalStateException("Cannot decode the date of the unknown tag " + tag);
+        }
+    }
+
+    /**
+     * check the value is exactly of the type
+     * @throws IllegalArgumentException if of a subtype
+     */
+    private static Object exactly(Class<?> type, Object value) {
+        if (value.getClass() != type) {
+            throw new IllegalArgumentException("Cannot encode the value of " + value.getClass().getName()
+                + ", a subtype of " + type.getName());
+        }
+        return value;
+    }
+
+    /**
+     * write the long as a zigzag varint, small values of either sign take fewer bytes
+     */
+    static void writeVarLong(ByteArrayDataOutput out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0L) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(ByteArrayDataInput in) {
+        long zigzag = 0L;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static void writeBytes(ByteArrayDataOutput out, byte[] bytes) {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteArrayDataInput in) {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
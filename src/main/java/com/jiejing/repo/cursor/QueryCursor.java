@@ -0,0 +1,159 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.cursor;
+
+import com.google.common.collect.ImmutableList;
+import com.jiejing.repo.utils.FutureUtil;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A cursor iterates records chunk by chunk, at most the current chunk and the read-ahead one are held in memory.
+ * <p>
+ * The cursor is closed once exhausted, close it explicitly (or the stream built on it) to stop early. Not thread safe.
+ */
+public class QueryCursor<T> implements Iterator<T>, Closeable {
+
+    /**
+     * The function to fetch a chunk of records
+     */
+    @FunctionalInterface
+    public interface ChunkFetcher<T> {
+
+        /**
+         * fetch the next chunk
+         * @param last the last record of the previous chunk, null for the first chunk
+         * @param offset the count of records fetched before
+         * @param size the chunk size
+         * @return the fetched records, less than size records means no more
+         */
+        Iterable<T> fetch(T last, long offset, int size);
+    }
+
+    private final ChunkFetcher<T> fetcher;
+
+    private final int chunkSize;
+
+    /**
+     * the executor to read the next chunk ahead, null to disable read-ahead
+     */
+    private final Executor readAheadExecutor;
+
+    private Iterator<T> current = Collections.emptyIterator();
+
+    private CompletableFuture<List<T>> pending;
+
+    private T last;
+
+    private long fetched;
+
+    private boolean exhausted;
+
+    private boolean closed;
+
+    public QueryCursor(ChunkFetcher<T> fetcher, int chunkSize, Executor readAheadExecutor) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.fetcher = fetcher;
+        this.chunkSize = chunkSize;
+        this.readAheadExecutor = readAheadExecutor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!closed && !current.hasNext()) {
+            if (exhausted) {
+                close();
+                break;
+            }
+            advance();
+        }
+        return !closed;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    /**
+     * the count of records fetched so far
+     * @return the fetched count
+     */
+    public long fetched() {
+        return fetched;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyIterator();
+        if (null != pending) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    /**
+     * wrap the cursor as a stream which closes the cursor on close
+     * @return the stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    private void advance() {
+        List<T> chunk;
+        if (null != pending) {
+            chunk = FutureUtil.join(pending);
+            pending = null;
+        } else {
+            chunk = load(last, fetched);
+        }
+        fetched += chunk.size();
+        if (chunk.size() < chunkSize) {
+            exhausted = true;
+        }
+        if (!chunk.isEmpty()) {
+            last = chunk.get(chunk.size() - 1);
+        }
+        current = chunk.iterator();
+
+        if (!exhausted && null != readAheadExecutor) {
+            final T nextLast = last;
+            final long nextOffset = fetched;
+            pending = CompletableFuture.supplyAsync(() -> load(nextLast, nextOffset), readAheadExecutor);
+        }
+    }
+
+    private List<T> load(T last, long offset) {
+        return ImmutableList.copyOf(fetcher.fetch(last, offset, chunkSize));
+    }
+}
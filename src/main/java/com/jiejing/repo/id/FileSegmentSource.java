@@ -0,0 +1,75 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.id;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A local file backed sequence, a stand-in of the database sequence table
+ * <p>
+ * Each key is kept in a file of the directory holds the next id to reserve, the file is locked while reserving
+ * so the processes sharing the directory never reserve overlapped blocks. Ids start from 1.
+ * <p>
+ * File locks are held by the process, so the reservations in the process are serialized by a shared lock.
+ */
+public class FileSegmentSource implements SegmentSource {
+    private static final Object LOCK = new Object();
+
+    private final Path directory;
+
+    /**
+     * @param directory the directory to keep the sequence files
+     */
+    public FileSegmentSource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public long allocate(String key, int step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be positive: " + step);
+        }
+        synchronized (LOCK) {
+            return reserve(key, step);
+        }
+    }
+
+    private long reserve(String key, int step) {
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(directory.resolve(key + ".seq"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock ignored = channel.lock()) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                long start = channel.read(buffer, 0L) == Long.BYTES ? ((ByteBuffer) buffer.flip()).getLong() : 1L;
+                buffer.clear();
+                buffer.putLong(0, start + step);
+                channel.write(buffer, 0L);
+                channel.force(true);
+                return start;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to allocate segment of " + key, e);
+        }
+    }
+}
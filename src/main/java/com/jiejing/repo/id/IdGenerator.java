@@ -0,0 +1,46 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.id;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The generator of entity ids assigned before the entities are written
+ *
+ * @param <I> the id type
+ */
+public interface IdGenerator<I> {
+
+    /**
+     * generate an id
+     * @return the id, never {@literal null}
+     */
+    I nextId();
+
+    /**
+     * generate multiple ids
+     * @param count the count of ids
+     * @return the ids in generated order
+     */
+    default List<I> nextIds(int count) {
+        List<I> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextId());
+        }
+        return ids;
+    }
+}
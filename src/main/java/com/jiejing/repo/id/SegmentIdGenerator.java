@@ -0,0 +1,136 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.id;
+
+import com.jiejing.repo.utils.FutureUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A generator hands out ids from segments reserved from the backing sequence
+ * <p>
+ * The next segment is reserved on the executor once the current one falls below the prefetch threshold, so the
+ * callers rarely wait for the backing sequence. Ids are increasing in a process but not across processes, and ids
+ * of the segments not used up are skipped on restart.
+ */
+public class SegmentIdGenerator implements IdGenerator<Long> {
+    private final SegmentSource source;
+
+    private final String key;
+
+    private final int step;
+
+    /**
+     * the count of ids left in the current segment to reserve the next one
+     */
+    private final long prefetchThreshold;
+
+    private final Executor executor;
+
+    /**
+     * the segment handing out ids, guarded by this
+     */
+    private Segment current;
+
+    /**
+     * the next segment being reserved, guarded by this
+     */
+    private CompletableFuture<Segment> next;
+
+    /**
+     * @param source the backing sequence
+     * @param key the key of the sequence
+     * @param step the count of ids per segment
+     * @param prefetchRatio the ratio of ids left in the current segment to reserve the next one, in [0, 1]
+     * @param executor the executor to reserve the next segment
+     */
+    public SegmentIdGenerator(SegmentSource source, String key, int step, double prefetchRatio, Executor executor) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step must be positive: " + step);
+        }
+        this.source = source;
+        this.key = key;
+        this.step = step;
+        this.prefetchThreshold = (long) (step * Math.min(Math.max(prefetchRatio, 0D), 1D));
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized Long nextId() {
+        if (null == current || current.remaining() == 0) {
+            current = takeNext();
+        }
+        long id = current.cursor++;
+        prefetch();
+        return id;
+    }
+
+    @Override
+    public synchronized List<Long> nextIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            if (null == current || current.remaining() == 0) {
+                current = takeNext();
+            }
+            long n = Math.min(count - ids.size(), current.remaining());
+            for (long i = 0; i < n; i++) {
+                ids.add(current.cursor++);
+            }
+            prefetch();
+        }
+        return ids;
+    }
+
+    /**
+     * reserve the next segment ahead if the current one is running out
+     */
+    private void prefetch() {
+        if (null == next && current.remaining() <= prefetchThreshold) {
+            next = CompletableFuture.supplyAsync(this::allocate, executor);
+        }
+    }
+
+    /**
+     * the next segment, wait for it if being reserved, or else reserve it now
+     */
+    private Segment takeNext() {
+        CompletableFuture<Segment> future = next;
+        next = null;
+        return null != future ? FutureUtil.join(future) : allocate();
+    }
+
+    private Segment allocate() {
+        long start = source.allocate(key, step);
+        return new Segment(start, start + step);
+    }
+
+    private static class Segment {
+        private long cursor;
+
+        private final long end;
+
+        private Segment(long start, long end) {
+            this.cursor = start;
+            this.end = end;
+        }
+
+        private long remaining() {
+            return end - cursor;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.id;
+
+/**
+ * The backing sequence reserves blocks of ids for the segment allocator
+ */
+public interface SegmentSource {
+
+    /**
+     * reserve a block of ids, the blocks reserved are never overlapped even across processes
+     * @param key the key of the sequence
+     * @param step the count of ids to reserve
+     * @return the first id of the reserved block [start, start + step)
+     */
+    long allocate(String key, int step);
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.id;
+
+/**
+ * A Snowflake-style generator composes ids of the timestamp, the worker and a sequence
+ * <p>
+ * An id holds 41 bits of milliseconds since the epoch, 10 bits of worker id and 12 bits of sequence in the
+ * millisecond, so ids are increasing per worker and unique across workers with distinct ids. A clock moving
+ * backwards within the tolerance is waited out, or else fails the generation.
+ */
+public class SnowflakeIdGenerator implements IdGenerator<Long> {
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * 2020-01-01T00:00:00Z
+     */
+    public static final long DEFAULT_EPOCH = 1577836800000L;
+
+    private static final long MAX_BACKWARD_MILLIS = 5L;
+
+    private final long epoch;
+
+    private final long workerId;
+
+    /**
+     * guarded by this
+     */
+    private long lastMillis = -1L;
+
+    /**
+     * guarded by this
+     */
+    private long sequence;
+
+    public SnowflakeIdGenerator(long workerId) {
+        this(DEFAULT_EPOCH, workerId);
+    }
+
+    /**
+     * @param epoch the epoch in milliseconds
+     * @param workerId the worker id in [0, {@value #MAX_WORKER_ID}]
+     */
+    public SnowflakeIdGenerator(long epoch, long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("worker id must be in [0, " + MAX_WORKER_ID + "]: " + workerId);
+        }
+        this.epoch = epoch;
+        this.workerId = workerId;
+    }
+
+    @Override
+    public synchronized Long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastMillis) {
+            if (lastMillis - now > MAX_BACKWARD_MILLIS) {
+                throw new IllegalStateException("Clock moved backwards by " + (lastMillis - now) + "ms");
+            }
+            now = waitUntil(lastMillis);
+        }
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now = waitUntil(lastMillis + 1);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = now;
+        return ((now - epoch) << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static long waitUntil(long millis) {
+        long now = System.currentTimeMillis();
+        while (now < millis) {
+            Thread.yield();
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+}
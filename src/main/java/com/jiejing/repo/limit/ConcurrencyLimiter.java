@@ -0,0 +1,258 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.limit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * An adaptive limit of the concurrent calls, adjusted by AIMD from the observed latency
+ * <p>
+ * Calls beyond the limit wait in a bounded queue for a bounded time, and are rejected with
+ * {@link LimitExceededException} at once if the queue is full or when the wait times out.
+ * <p>
+ * Each call samples its latency excluding the wait. A sample slower than the tolerance times the baseline latency
+ * of the calls of the same key is taken as queueing in the data source and cuts the limit by the backoff ratio, any
+ * other sample grows the limit by one per limit count of samples while the limit is in use. The baseline follows
+ * the faster samples quickly and the slower ones slowly, so it stays near the latency without load and a lasting
+ * slowdown is only treated as the new normal after about a thousand samples.
+ * <p>
+ * Calls nested in a call of the same limiter on the same thread pass through, they are part of the outer call.
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9D;
+
+    /**
+     * the weight of a sample faster than the baseline
+     */
+    private static final double SMOOTHING_DOWN = 0.1D;
+
+    /**
+     * the weight of a sample slower than the baseline
+     */
+    private static final double SMOOTHING_UP = 0.001D;
+
+    private final String name;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueued;
+
+    private final long maxWaitNanos;
+
+    private final double tolerance;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private final ThreadLocal<Boolean> holding = new ThreadLocal<>();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * the current limit, the fraction accumulates the additive increase
+     */
+    private volatile double limit;
+
+    /**
+     * the bits of the baseline latency in nanoseconds per key
+     */
+    private final ConcurrentMap<Object, AtomicLong> baselines = new ConcurrentHashMap<>();
+
+    /**
+     * @param name the name of the limiter
+     * @param initialLimit the initial limit
+     * @param minLimit the min limit
+     * @param maxLimit the max limit
+     * @param maxQueued the max count of waiting calls, 0 to reject at once when the limit is reached
+     * @param maxWaitMillis the max milliseconds to wait for a slot
+     * @param tolerance the ratio of the latency to the baseline taken as queueing
+     */
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueued,
+        long maxWaitMillis, double tolerance) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Illegal limit range [" + minLimit + ", " + maxLimit + "]");
+        }
+        if (tolerance <= 1D) {
+            throw new IllegalArgumentException("tolerance must be greater than 1: " + tolerance);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueued = Math.max(0, maxQueued);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, maxWaitMillis));
+        this.tolerance = tolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * run the call within the limit
+     * @param latencyKey the key of the baseline latency, calls of different costs should use different keys
+     * @param call the call
+     * @param <R> the result type
+     * @return the result of the call
+     * @throws LimitExceededException if rejected
+     */
+    public <R> R call(Object latencyKey, Supplier<R> call) {
+        if (null != holding.get()) {
+            return call.get();
+        }
+        acquire();
+        holding.set(Boolean.TRUE);
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            holding.remove();
+            release(latencyKey, System.nanoTime() - start);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * the current limit
+     */
+    public int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * the count of calls running within the limit
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * the count of calls waiting for a slot
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * the count of calls rejected for the full queue
+     */
+    public long rejectCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * the count of calls rejected after waiting too long
+     */
+    public long timeoutCount() {
+        return timedOut.sum();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void acquire() {
+        if (tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejected.increment();
+            throw new LimitExceededException(name, limit(), false);
+        }
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            long nanos = maxWaitNanos;
+            while (!tryAcquire()) {
+                if (nanos <= 0L) {
+                    timedOut.increment();
+                    throw new LimitExceededException(name, limit(), true);
+                }
+                try {
+                    nanos = released.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    timedOut.increment();
+                    throw new LimitExceededException(name, limit(), true);
+                }
+            }
+        } finally {
+            queued.decrementAndGet();
+            lock.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void release(Object latencyKey, long latencyNanos) {
+        int running = inFlight.getAndDecrement();
+        adjust(baselines.computeIfAbsent(latencyKey, key -> new AtomicLong()), latencyNanos, running);
+        if (queued.get() > 0) {
+            lock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * AIMD on the latency sample, the races between the samples only lose some adjustments
+     * @param baselineBits the bits of the baseline latency of the key, 0 before the first sample
+     * @param latencyNanos the latency
+     * @param running the count of calls running when the call completes, including the call
+     */
+    private void adjust(AtomicLong baselineBits, long latencyNanos, int running) {
+        double baseline = Double.longBitsToDouble(baselineBits.get());
+        double smoothing = latencyNanos < baseline ? SMOOTHING_DOWN : SMOOTHING_UP;
+        baselineBits.set(Double.doubleToRawLongBits(
+            0D == baseline ? latencyNanos : baseline + (latencyNanos - baseline) * smoothing));
+        double current = limit;
+        if (0D != baseline && latencyNanos > baseline * tolerance) {
+            limit = Math.max(minLimit, current * BACKOFF_RATIO);
+        } else if (running * 2 >= (int) current) {
+            limit = Math.min(maxLimit, current + 1D / current);
+        }
+    }
+}
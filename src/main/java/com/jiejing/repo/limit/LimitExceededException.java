@@ -0,0 +1,48 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.limit;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a call is rejected by a {@link ConcurrencyLimiter}, either the wait queue is full or the call waited
+ * for a slot too long
+ */
+@Getter
+public class LimitExceededException extends RuntimeException {
+
+    /**
+     * the name of the limiter
+     */
+    private final String limiterName;
+
+    /**
+     * the limit when rejected
+     */
+    private final int limit;
+
+    /**
+     * true if rejected after waiting, false if rejected for the full queue
+     */
+    private final boolean timedOut;
+
+    public LimitExceededException(String limiterName, int limit, boolean timedOut) {
+        super((timedOut ? "Timed out waiting for " : "Queue is full for ") + limiterName + ", limit " + limit);
+        this.limiterName = limiterName;
+        this.limit = limit;
+        this.timedOut = timedOut;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.limit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * The registry of concurrency limiters per table
+ * <p>
+ * The limiters are shared by all the services of the same table in the process, the first service creates the
+ * limiter decides its settings.
+ */
+public final class TableLimiters {
+    private static final ConcurrentMap<String, ConcurrencyLimiter> LIMITERS = new ConcurrentHashMap<>();
+
+    private TableLimiters() {
+    }
+
+    /**
+     * the read limiter of the table
+     * @param schema the schema/database of the table
+     * @param table the table name
+     * @param factory the factory of the limiter with the given name if absent
+     * @return the limiter
+     */
+    public static ConcurrencyLimiter reads(String schema, String table, Function<String, ConcurrencyLimiter> factory) {
+        return LIMITERS.computeIfAbsent(schema + "." + table + ".read", factory);
+    }
+
+    /**
+     * the write limiter of the table
+     * @param schema the schema/database of the table
+     * @param table the table name
+     * @param factory the factory of the limiter with the given name if absent
+     * @return the limiter
+     */
+    public static ConcurrencyLimiter writes(String schema, String table, Function<String, ConcurrencyLimiter> factory) {
+        return LIMITERS.computeIfAbsent(schema + "." + table + ".write", factory);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.meta;
+
+import com.jiejing.repo.RepoConfig;
+import com.jiejing.repo.accessor.EntityAccessor;
+import java.lang.reflect.Type;
+
+/**
+ * The metadata of a repository service resolved at build time
+ * <p>
+ * Implementations are generated by the repo-core processor as {@code <Service>_RepoMeta} next to every class
+ * annotated with {@link RepoConfig}, and looked up by {@link #of(Class)}.
+ * @param <I> the id type
+ * @param <T> the entity type
+ */
+public interface RepoMetadata<I, T> {
+
+    /**
+     * Get the generated metadata of the service class
+     * @param serviceClass the service class
+     * @return the metadata, null if not generated
+     */
+    static RepoMetadata<?, ?> of(Class<?> serviceClass) {
+        return RepoMetadatas.get(serviceClass);
+    }
+
+    /**
+     * The type of entity id
+     * @return the id type
+     */
+    Type idType();
+
+    /**
+     * The type of entity
+     * @return the entity type
+     */
+    Type entityType();
+
+    /**
+     * The repository service configuration
+     * @return the config
+     */
+    RepoConfig config();
+
+    /**
+     * The typed property accessor of entity
+     * @return the accessor
+     */
+    EntityAccessor<T> accessor();
+}
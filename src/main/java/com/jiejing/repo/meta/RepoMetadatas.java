@@ -0,0 +1,72 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package com.jiejing.repo.meta;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The cache of generated metadata by service class
+ */
+@Slf4j
+final class RepoMetadatas {
+
+    /**
+     * the suffix of the generated metadata class name
+     */
+    static final String SUFFIX = "_RepoMeta";
+
+    private static final ClassValue<RepoMetadata<?, ?>> METADATAS = new ClassValue<RepoMetadata<?, ?>>() {
+        @Override
+        protected RepoMetadata<?, ?> computeValue(Class<?> type) {
+            return load(type);
+        }
+    };
+
+    private RepoMetadatas() {
+    }
+
+    static RepoMetadata<?, ?> get(Class<?> serviceClass) {
+        return METADATAS.get(serviceClass);
+    }
+
+    /**
+     * the generated class lives in the package of the service, named after its binary name with '$' replaced
+     */
+    static String metadataClassName(Class<?> serviceClass) {
+        return serviceClass.getName().replace('$', '_') + SUFFIX;
+    }
+
+    private static RepoMetadata<?, ?> load(Class<?> serviceClass) {
+        String name = metadataClassName(serviceClass);
+        Class<?> metaClass;
+        try {
+            metaClass = Class.forName(name, true, serviceClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!RepoMetadata.class.isAssignableFrom(metaClass)) {
+            log.warn("Ignore {} which does not implement {}", name, RepoMetadata.class.getName());
+            return null;
+        }
+        try {
+            return (RepoMetadata<?, ?>) metaClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Cannot instantiate {}, fallback to reflection", name, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The metrics keeps the stats in process with lock-free histograms and counters
+ * <p>
+ * Recording looks up the stats without allocating, the stats of an operation on a table is created on its first
+ * record.
+ */
+public class InProcessRepoMetrics implements RepoMetrics {
+
+    private static final int OPERATIONS = RepoOperation.values().length;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicReferenceArray<OperationStats>>> stats =
+        new ConcurrentHashMap<>();
+
+    @Override
+    public void record(String schema, String table, RepoOperation operation, long latencyNanos, long rowsIn,
+        long rowsOut, boolean error) {
+        statsOf(schema, table, operation).record(latencyNanos, rowsIn, rowsOut, error);
+    }
+
+    /**
+     * the stats of an operation on a table
+     * @param schema the schema
+     * @param table the table
+     * @param operation the operation
+     * @return the stats, never null
+     */
+    public OperationStats statsOf(String schema, String table, RepoOperation operation) {
+        ConcurrentMap<String, AtomicReferenceArray<OperationStats>> tables = stats.get(schema);
+        if (null == tables) {
+            tables = stats.computeIfAbsent(schema, key -> new ConcurrentHashMap<>());
+        }
+        AtomicReferenceArray<OperationStats> operations = tables.get(table);
+        if (null == operations) {
+            operations = tables.computeIfAbsent(table, key -> new AtomicReferenceArray<>(OPERATIONS));
+        }
+        OperationStats found = operations.get(operation.ordinal());
+        if (null == found) {
+            operations.compareAndSet(operation.ordinal(), null, new OperationStats(schema, table, operation));
+            found = operations.get(operation.ordinal());
+        }
+        return found;
+    }
+
+    /**
+     * all the recorded stats
+     * @return the stats
+     */
+    public List<OperationStats> snapshot() {
+        List<OperationStats> all = new ArrayList<>();
+        stats.values().forEach(tables -> tables.values().forEach(operations -> {
+            for (int i = 0; i < operations.length(); i++) {
+                if (null != operations.get(i)) {
+                    all.add(operations.get(i));
+                }
+            }
+        }));
+        return all;
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.metrics;
+
+/**
+ * The metrics records nothing
+ */
+final class NoopRepoMetrics implements RepoMetrics {
+
+    static final NoopRepoMetrics INSTANCE = new NoopRepoMetrics();
+
+    private NoopRepoMetrics() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void record(String schema, String table, RepoOperation operation, long latencyNanos, long rowsIn,
+        long rowsOut, boolean error) {
+    }
+}
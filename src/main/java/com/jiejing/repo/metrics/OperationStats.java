@@ -0,0 +1,88 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * The recorded stats of an operation on a table
+ */
+public class OperationStats {
+
+    @Getter
+    private final String schema;
+
+    @Getter
+    private final String table;
+
+    @Getter
+    private final RepoOperation operation;
+
+    /**
+     * the latency histogram in nanoseconds
+     */
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder errors = new LongAdder();
+
+    private final LongAdder rowsIn = new LongAdder();
+
+    private final LongAdder rowsOut = new LongAdder();
+
+    OperationStats(String schema, String table, RepoOperation operation) {
+        this.schema = schema;
+        this.table = table;
+        this.operation = operation;
+    }
+
+    void record(long latencyNanos, long in, long out, boolean error) {
+        latency.record(latencyNanos);
+        if (in > 0) {
+            rowsIn.add(in);
+        }
+        if (out > 0) {
+            rowsOut.add(out);
+        }
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    public long calls() {
+        return latency.count();
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long rowsIn() {
+        return rowsIn.sum();
+    }
+
+    public long rowsOut() {
+        return rowsOut.sum();
+    }
+
+    @Override
+    public String toString() {
+        return schema + "." + table + " " + operation.tag() + " calls=" + calls() + " errors=" + errors()
+            + " rowsIn=" + rowsIn() + " rowsOut=" + rowsOut() + " p50=" + latency.percentile(50D)
+            + "ns p99=" + latency.percentile(99D) + "ns max=" + latency.max() + "ns";
+    }
+}
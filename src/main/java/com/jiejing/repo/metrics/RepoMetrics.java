@@ -0,0 +1,54 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.metrics;
+
+/**
+ * The SPI to record the metrics of repository service operations
+ * <p>
+ * Register an implementation as a bean to enable, such as {@link InProcessRepoMetrics}, operations are not measured
+ * when no bean is registered.
+ */
+public interface RepoMetrics {
+
+    /**
+     * The metrics records nothing
+     * @return the no-op metrics
+     */
+    static RepoMetrics noop() {
+        return NoopRepoMetrics.INSTANCE;
+    }
+
+    /**
+     * Whether to measure the operations, the clock is not read at all if disabled
+     * @return default to true
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Record an operation
+     * @param schema the schema of the service
+     * @param table the table of the service
+     * @param operation the operation
+     * @param latencyNanos the nanoseconds the operation took
+     * @param rowsIn the count of records or ids passed in, -1 if unknown or not applicable
+     * @param rowsOut the count of records returned or affected, -1 if unknown or not applicable
+     * @param error whether the operation failed
+     */
+    void record(String schema, String table, RepoOperation operation, long latencyNanos, long rowsIn, long rowsOut,
+        boolean error);
+}
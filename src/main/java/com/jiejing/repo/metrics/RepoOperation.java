@@ -0,0 +1,78 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.metrics;
+
+/**
+ * The data operations of repository services
+ */
+public enum RepoOperation {
+    GET_BY_ID("getById", Kind.READ),
+    GET_ALL_BY_ID("getAllById", Kind.READ),
+    BATCH_LOAD("batchLoad", Kind.READ),
+    FIND_BY_QUERY("findByQuery", Kind.READ),
+    FIND_ONE_BY_QUERY("findOneByQuery", Kind.READ),
+    FIND_BY_QUERY_PAGE("findByQueryPage", Kind.READ),
+    FIND_BY_QUERY_SLICE("findByQuerySlice", Kind.READ),
+    FIND_BY_QUERY_SEEK("findByQuerySeek", Kind.READ),
+    COUNT_BY_QUERY("countByQuery", Kind.READ),
+    INSERT_ALL("insertAll", Kind.WRITE),
+    UPDATE_BY_IDS("updateByIds", Kind.WRITE),
+    DELETE_BY_IDS("deleteByIds", Kind.WRITE),
+    UPDATE_BY_QUERY("updateByQuery", Kind.WRITE),
+    DELETE_BY_QUERY("deleteByQuery", Kind.WRITE),
+    SAVE_IGNORE("saveIgnore", Kind.WRITE),
+    PROXY_INSERT("proxy.preInsert", Kind.PROXY),
+    PROXY_UPDATE("proxy.preUpdate", Kind.PROXY),
+    PROXY_DELETE("proxy.preDelete", Kind.PROXY);
+
+    /**
+     * the kinds of operations
+     */
+    public enum Kind {
+        /**
+         * reads the table
+         */
+        READ,
+        /**
+         * writes the table
+         */
+        WRITE,
+        /**
+         * notifies the proxy
+         */
+        PROXY
+    }
+
+    /**
+     * the tag value of the operation
+     */
+    private final String tag;
+
+    private final Kind kind;
+
+    RepoOperation(String tag, Kind kind) {
+        this.tag = tag;
+        this.kind = kind;
+    }
+
+    public String tag() {
+        return tag;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.proxy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.jiejing.repo.IRepoProxy;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The proxy dispatches the hooks of the delegate asynchronously in batches
+ * <p>
+ * Events are put into bounded queues, one per worker lane, and a table is always served by the same lane so the
+ * events of a table are dispatched in order. A worker drains its queue for up to the linger time or the batch
+ * size, then coalesces adjacent events of the same kind on the same table into one call of the delegate.
+ * <p>
+ * The entities of an event are handed to the delegate later on another thread, so they should not be modified
+ * after written.
+ */
+@Slf4j
+public class AsyncRepoProxy implements IRepoProxy, Closeable {
+
+    private final IRepoProxy delegate;
+
+    private final int batchSize;
+
+    private final long lingerNanos;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Lane[] lanes;
+
+    private volatile boolean closed;
+
+    private final AtomicLong dispatchedEvents = new AtomicLong();
+
+    private final AtomicLong dispatchedBatches = new AtomicLong();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private final AtomicLong callerRunsEvents = new AtomicLong();
+
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    private final AtomicLong lastLagNanos = new AtomicLong();
+
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * @param delegate the proxy to dispatch to
+     * @param workers the count of worker lanes
+     * @param queueSize the capacity of the queue per lane
+     * @param batchSize the max count of entities per dispatched batch
+     * @param lingerMillis the max milliseconds to wait for more events to batch
+     * @param overflowPolicy the policy when the queue is full
+     */
+    public AsyncRepoProxy(IRepoProxy delegate, int workers, int queueSize, int batchSize, long lingerMillis,
+        OverflowPolicy overflowPolicy) {
+        if (workers <= 0 || queueSize <= 0 || batchSize <= 0 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid async proxy settings");
+        }
+        this.delegate = Objects.requireNonNull(delegate, "delegate proxy is null");
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.lanes = new Lane[workers];
+        for (int i = 0; i < workers; i++) {
+            lanes[i] = new Lane(queueSize, i);
+            lanes[i].start();
+        }
+    }
+
+    @Override
+    public <T> void preInsert(Class<T> entityClass, String schema, String table, Iterable<T> entities) {
+        enqueue(new Event(EventType.INSERT, entityClass, schema, table, null, entities, null));
+    }
+
+    @Override
+    public <T> void preDelete(Class<T> entityClass, String schema, String table, Iterable<T> entities) {
+        enqueue(new Event(EventType.DELETE, entityClass, schema, table, null, entities, null));
+    }
+
+    @Override
+    public <T> void preUpdate(Class<T> entityClass, String schema, String table, Iterable<T> oldEntities,
+        Iterable<T> newEntities, Set<String> modifiedFields) {
+        enqueue(new Event(EventType.UPDATE, entityClass, schema, table, oldEntities, newEntities, modifiedFields));
+    }
+
+    /**
+     * the count of events waiting in the queues
+     * @return the queue depth
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    /**
+     * the milliseconds from enqueued to dispatched of the last dispatched event
+     * @return the lag
+     */
+    public long lastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLagNanos.get());
+    }
+
+    /**
+     * the max milliseconds from enqueued to dispatched of all dispatched events
+     * @return the lag
+     */
+    public long maxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    public long dispatchedEvents() {
+        return dispatchedEvents.get();
+    }
+
+    public long dispatchedBatches() {
+        return dispatchedBatches.get();
+    }
+
+    public long droppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long callerRunsEvents() {
+        return callerRunsEvents.get();
+    }
+
+    public long failedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * stop accepting events, dispatch the queued ones and stop the workers
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Lane lane : lanes) {
+            try {
+                lane.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // events may be queued right before the workers stop
+        for (Lane lane : lanes) {
+            List<Event> left = new ArrayList<>();
+            lane.queue.drainTo(left);
+            if (!left.isEmpty()) {
+                lane.dispatchWindow(left);
+            }
+        }
+    }
+
+    private void enqueue(Event event) {
+        if (closed) {
+            dispatch(new Batch(event), false);
+            return;
+        }
+        BlockingQueue<Event> queue = lanes[Math.floorMod(event.key.hashCode(), lanes.length)].queue;
+        if (queue.offer(event)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    Event dropped = queue.poll();
+                    if (null != dropped) {
+                        droppedEvents.incrementAndGet();
+                        log.warn("Async proxy queue is full, drop {} event of {}", dropped.type, dropped.key);
+                    }
+                }
+                break;
+            case CALLER_RUNS:
+                callerRunsEvents.incrementAndGet();
+                dispatch(new Batch(event), false);
+                break;
+            default:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the async proxy queue", e);
+                }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(Batch batch, boolean recordLag) {
+        TableKey key = batch.key;
+        Iterable entities = batch.entities.size() == 1 ? batch.entities.get(0) : Iterables.concat(batch.entities);
+        try {
+            switch (batch.type) {
+                case INSERT:
+                    delegate.preInsert(key.entityClass, key.schema, key.table, entities);
+                    break;
+                case DELETE:
+                    delegate.preDelete(key.entityClass, key.schema, key.table, entities);
+                    break;
+                default:
+                    Iterable oldEntities = batch.oldEntities.size() == 1
+                        ? batch.oldEntities.get(0) : Iterables.concat(batch.oldEntities);
+                    delegate.preUpdate(key.entityClass, key.schema, key.table, oldEntities, entities,
+                        batch.modifiedFields);
+            }
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            log.error("Failed to dispatch {} events of {} to the proxy", batch.type, key, e);
+        }
+        dispatchedBatches.incrementAndGet();
+        dispatchedEvents.addAndGet(batch.events);
+        if (recordLag) {
+            long lag = System.nanoTime() - batch.firstEnqueuedNanos;
+            lastLagNanos.set(lag);
+            maxLagNanos.accumulateAndGet(lag, Math::max);
+        }
+    }
+
+    private enum EventType {
+        INSERT, DELETE, UPDATE
+    }
+
+    private static final class TableKey {
+        private final Class entityClass;
+        private final String schema;
+        private final String table;
+        private final int hash;
+
+        private TableKey(Class entityClass, String schema, String table) {
+            this.entityClass = entityClass;
+            this.schema = schema;
+            this.table = table;
+            this.hash = Objects.hash(entityClass, schema, table);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TableKey)) {
+                return false;
+            }
+            TableKey that = (TableKey) o;
+            return entityClass == that.entityClass && Objects.equals(schema, that.schema)
+                && Objects.equals(table, that.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return schema + "." + table + "(" + entityClass.getSimpleName() + ")";
+        }
+    }
+
+    private static final class Event {
+        private final EventType type;
+        private final TableKey key;
+        private final List<?> oldEntities;
+        private final List<?> entities;
+        private final Set<String> modifiedFields;
+        private final long enqueuedNanos = System.nanoTime();
+
+        private Event(EventType type, Class<?> entityClass, String schema, String table, Iterable<?> oldEntities,
+            Iterable<?> entities, Set<String> modifiedFields) {
+            this.type = type;
+            this.key = new TableKey(entityClass, schema, table);
+            this.oldEntities = null != oldEntities ? ImmutableList.copyOf(oldEntities) : null;
+            this.entities = ImmutableList.copyOf(entities);
+            this.modifiedFields = null != modifiedFields ? ImmutableSet.copyOf(modifiedFields) : null;
+        }
+    }
+
+    private static final class Batch {
+        private final EventType type;
+        private final TableKey key;
+        private final Set<String> modifiedFields;
+        private final List<List<?>> oldEntities = new ArrayList<>();
+        private final List<List<?>> entities = new ArrayList<>();
+        private final long firstEnqueuedNanos;
+        private int size;
+        private int events;
+
+        private Batch(Event event) {
+            this.type = event.type;
+            this.key = event.key;
+            this.modifiedFields = event.modifiedFields;
+            this.firstEnqueuedNanos = event.enqueuedNanos;
+            add(event);
+        }
+
+        private boolean canMerge(Event event, int batchSize) {
+            return type == event.type && size + event.entities.size() <= batchSize
+                && Objects.equals(modifiedFields, event.modifiedFields);
+        }
+
+        private void add(Event event) {
+            entities.add(event.entities);
+            if (null != event.oldEntities) {
+                oldEntities.add(event.oldEntities);
+            }
+            size += event.entities.size();
+            events++;
+        }
+    }
+
+    private final class Lane extends Thread {
+
+        private final BlockingQueue<Event> queue;
+
+        private Lane(int queueSize, int index) {
+            super("repo-proxy-dispatch-" + index);
+            setDaemon(true);
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            List<Event> window = new ArrayList<>();
+            while (!closed || !queue.isEmpty()) {
+                try {
+                    drainWindow(window);
+                } catch (InterruptedException e) {
+                    log.warn("Async proxy worker {} is interrupted", getName());
+                }
+                if (!window.isEmpty()) {
+                    dispatchWindow(window);
+                    window.clear();
+                }
+            }
+        }
+
+        private void drainWindow(List<Event> window) throws InterruptedException {
+            Event first = queue.poll(100L, TimeUnit.MILLISECONDS);
+            if (null == first) {
+                return;
+            }
+            window.add(first);
+            int drained = first.entities.size();
+            long deadline = first.enqueuedNanos + lingerNanos;
+            while (drained < batchSize) {
+                long remaining = deadline - System.nanoTime();
+                Event next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                if (null == next) {
+                    break;
+                }
+                window.add(next);
+                drained += next.entities.size();
+            }
+        }
+
+        /**
+         * coalesce the events per table, a batch is dispatched before a later event on the same table can not be
+         * merged into it, so the order of a table is kept
+         */
+        private void dispatchWindow(List<Event> window) {
+            Map<TableKey, Batch> open = new LinkedHashMap<>();
+            for (Event event : window) {
+                Batch batch = open.get(event.key);
+                if (null != batch && batch.canMerge(event, batchSize)) {
+                    batch.add(event);
+                    continue;
+                }
+                if (null != batch) {
+                    dispatch(batch, true);
+                }
+                open.put(event.key, new Batch(event));
+            }
+            for (Batch batch : open.values()) {
+                dispatch(batch, true);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.proxy;
+
+/**
+ * What to do with a proxy event when the dispatch queue is full
+ */
+public enum OverflowPolicy {
+    /**
+     * block the writer until the queue has room
+     */
+    BLOCK,
+    /**
+     * drop the oldest queued event of the lane to make room
+     */
+    DROP_OLDEST,
+    /**
+     * dispatch the event on the writer thread, it may be handled before the events already queued
+     */
+    CALLER_RUNS
+}
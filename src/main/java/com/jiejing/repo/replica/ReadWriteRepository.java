@@ -0,0 +1,241 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.replica;
+
+import com.jiejing.repo.Repository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A repository writes to the primary and reads from the replicas in round robin
+ * <p>
+ * Every write opens a read-your-writes window on the table for the calling thread, see {@link ReadYourWrites}.
+ * Reads in the window are routed to the primary.
+ *
+ * @param <I> the id type
+ * @param <T> the entity type
+ */
+public class ReadWriteRepository<I, T> implements Repository<I, T> {
+
+    private final Repository<I, T> primary;
+
+    private final List<Repository<I, T>> replicas;
+
+    /**
+     * the key of the table the windows are opened on
+     */
+    private final String table;
+
+    /**
+     * the length of the read-your-writes window in milliseconds
+     */
+    private final long windowMillis;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * the end of the window after the last write through the repository in nanoseconds
+     */
+    private volatile long writtenUntil = System.nanoTime();
+
+    private final LongAdder primaryReads = new LongAdder();
+
+    private final LongAdder replicaReads = new LongAdder();
+
+    /**
+     * @param primary the primary repository
+     * @param replicas the replica repositories
+     * @param table the key of the table
+     * @param windowMillis the length of the read-your-writes window in milliseconds
+     */
+    public ReadWriteRepository(Repository<I, T> primary, List<? extends Repository<I, T>> replicas, String table,
+        long windowMillis) {
+        if (null == replicas || replicas.isEmpty()) {
+            throw new IllegalArgumentException("replicas are empty");
+        }
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.table = table;
+        this.windowMillis = windowMillis;
+    }
+
+    public Repository<I, T> primary() {
+        return primary;
+    }
+
+    public List<Repository<I, T>> replicas() {
+        return replicas;
+    }
+
+    /**
+     * open the read-your-writes window for the current thread ahead of a write, so the reads before the write
+     * see the latest records as well
+     */
+    public void pin() {
+        ReadYourWrites.written(table, windowMillis);
+    }
+
+    /**
+     * open the read-your-writes window for the session, for the writes run on behalf of the session by other
+     * threads
+     * @param session the session of the caller
+     */
+    public void pin(ReadYourWrites.Session session) {
+        session.written(table, windowMillis);
+    }
+
+    /**
+     * if any thread wrote through the repository within the read-your-writes window, the replicas may still miss
+     * the write
+     * @return true if written recently
+     */
+    public boolean recentlyWritten() {
+        return writtenUntil - System.nanoTime() > 0;
+    }
+
+    /**
+     * if the current thread is in the read-your-writes window of the table, its reads are routed to the primary
+     * @return true if pinned to the primary
+     */
+    public boolean pinned() {
+        return ReadYourWrites.pinned(table);
+    }
+
+    /**
+     * the count of reads routed to the primary
+     */
+    public long primaryReads() {
+        return primaryReads.sum();
+    }
+
+    /**
+     * the count of reads routed to the replicas
+     */
+    public long replicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * the repository to read from
+     */
+    private Repository<I, T> reader() {
+        if (ReadYourWrites.pinned(table)) {
+            primaryReads.increment();
+            return primary;
+        }
+        replicaReads.increment();
+        return replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * write to the primary and open the read-your-writes window
+     */
+    private <R> R write(Supplier<R> call) {
+        try {
+            return call.get();
+        } finally {
+            ReadYourWrites.written(table, windowMillis);
+            writtenUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        }
+    }
+
+    @Override
+    public I getId(T entity) {
+        return primary.getId(entity);
+    }
+
+    @Override
+    public void setId(T entity, I id) {
+        primary.setId(entity, id);
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        return write(() -> primary.insert(entity));
+    }
+
+    @Override
+    public <S extends T> Iterable<S> insertAll(Iterable<S> entities) {
+        return write(() -> primary.insertAll(entities));
+    }
+
+    @Override
+    public T updateById(T entity) {
+        return write(() -> primary.updateById(entity));
+    }
+
+    @Override
+    public Iterable<T> updateByIds(Iterable<I> ids, T entity) {
+        return write(() -> primary.updateByIds(ids, entity));
+    }
+
+    @Override
+    public boolean dropById(I id) {
+        return write(() -> primary.dropById(id));
+    }
+
+    @Override
+    public Iterable<I> dropByIds(Iterable<I> ids) {
+        return write(() -> primary.dropByIds(ids));
+    }
+
+    @Override
+    public long dropByCond(Object cond) {
+        return write(() -> primary.dropByCond(cond));
+    }
+
+    @Override
+    public long updateByCond(Object cond, T entity) {
+        return write(() -> primary.updateByCond(cond, entity));
+    }
+
+    @Override
+    public Optional<T> findById(I id) {
+        return reader().findById(id);
+    }
+
+    @Override
+    public Iterable<T> findAllById(Iterable<I> ids) {
+        return reader().findAllById(ids);
+    }
+
+    @Override
+    public long count() {
+        return reader().count();
+    }
+
+    @Override
+    public Iterable<T> findByCond(Object cond) {
+        return reader().findByCond(cond);
+    }
+
+    @Override
+    public Iterable<T> findByCond(Object cond, Set<String> fields) {
+        return reader().findByCond(cond, fields);
+    }
+
+    @Override
+    public long countByCond(Object cond) {
+        return reader().countByCond(cond);
+    }
+}
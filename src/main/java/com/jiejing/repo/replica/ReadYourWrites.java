@@ -0,0 +1,105 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.replica;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read-your-writes windows of the current thread
+ * <p>
+ * A write to a table opens a window on the table, reads of the table in the window are routed to the primary so
+ * the caller always sees its own writes. The windows are kept in a {@link Session} bound to the thread, bind the
+ * same session to the threads serving a user session to share the windows across them.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<Session> SESSION = ThreadLocal.withInitial(Session::new);
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * the session bound to the current thread
+     * @return the session
+     */
+    public static Session current() {
+        return SESSION.get();
+    }
+
+    /**
+     * bind the session to the current thread
+     * @param session the session, null to bind a new one
+     * @return the session bound before, to be restored
+     */
+    public static Session bind(Session session) {
+        Session previous = SESSION.get();
+        SESSION.set(null != session ? session : new Session());
+        return previous;
+    }
+
+    /**
+     * open or extend the window on the table for the current thread
+     * @param table the key of the table
+     * @param windowMillis the length of the window in milliseconds
+     */
+    public static void written(String table, long windowMillis) {
+        current().written(table, windowMillis);
+    }
+
+    /**
+     * if the current thread is in a window on the table
+     * @param table the key of the table
+     * @return true to read from the primary
+     */
+    public static boolean pinned(String table) {
+        return current().pinned(table);
+    }
+
+    /**
+     * close all the windows of the current thread
+     */
+    public static void clear() {
+        SESSION.remove();
+    }
+
+    /**
+     * The read-your-writes windows of a caller
+     */
+    public static class Session {
+        /**
+         * the deadlines of windows in nanoseconds keyed by table
+         */
+        private final Map<String, Long> deadlines = Maps.newConcurrentMap();
+
+        public void written(String table, long windowMillis) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+            deadlines.merge(table, deadline, (a, b) -> a - b > 0 ? a : b);
+        }
+
+        public boolean pinned(String table) {
+            Long deadline = deadlines.get(table);
+            if (null == deadline) {
+                return false;
+            }
+            if (deadline - System.nanoTime() > 0) {
+                return true;
+            }
+            deadlines.remove(table, deadline);
+            return false;
+        }
+    }
+}
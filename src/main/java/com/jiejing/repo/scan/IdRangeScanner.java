@@ -0,0 +1,282 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.scan;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Scan the records of integral ids range by range in parallel
+ * <p>
+ * The id range is split into ranges of nearly the same width, the ranges are fetched chunk by chunk in id order on
+ * a fork-join pool of the given parallelism, and each chunk is passed to the consumer on the worker thread. The
+ * consumer is called concurrently for different ranges.
+ * <p>
+ * With a checkpoint file, the progress of the ranges is written periodically and when the scan fails or is
+ * interrupted, and a scan finds the file resumes from it. The file holds the identity of the scan and is only
+ * resumed by the same scan. On resume the id range is discovered again, and the ids out of the ranges of the
+ * checkpoint are scanned in new ranges. The file is deleted when the scan completes. Records are consumed at least
+ * once, the chunks consumed after the last checkpoint are consumed again on resume. Records inserted out of the
+ * discovered id range during a run are not scanned by the run.
+ *
+ * @param <T> the entity type
+ */
+@Slf4j
+public class IdRangeScanner<T> {
+
+    /**
+     * The fetcher of the records in an id range
+     * @param <T> the entity type
+     */
+    @FunctionalInterface
+    public interface RangeFetcher<T> {
+        /**
+         * find the records with ids after the given id up to the end id inclusive
+         * @param afterId the id to start after
+         * @param toId the end id inclusive
+         * @param limit the max count of records to find
+         * @return found records ordered by id ascending, less than the limit only if no more in the range
+         */
+        List<T> fetch(long afterId, long toId, int limit);
+    }
+
+    private final String name;
+
+    private final ScanOptions options;
+
+    private final RangeFetcher<T> fetcher;
+
+    private final ToLongFunction<T> idGetter;
+
+    /**
+     * @param name the name of the scan, used to name the threads
+     * @param options the scan options
+     * @param fetcher the fetcher of the records in an id range
+     * @param idGetter the id getter of the records
+     */
+    public IdRangeScanner(String name, ScanOptions options, RangeFetcher<T> fetcher, ToLongFunction<T> idGetter) {
+        this.name = name;
+        this.options = options;
+        this.fetcher = fetcher;
+        this.idGetter = idGetter;
+    }
+
+    /**
+     * scan the records
+     * @param identity the identity of the scan, the same table and query have the same identity across processes
+     * @param rangeFinder the finder of the min and max id, returns null if no record
+     * @param consumer the consumer of the record chunks
+     * @return the scan result
+     * @throws UncheckedIOException if failed to read the checkpoint file
+     * @throws IllegalStateException if the checkpoint file belongs to another scan
+     */
+    public ScanResult scan(String identity, Supplier<long[]> rangeFinder, Consumer<? super List<T>> consumer) {
+        Path file = options.getCheckpointFile();
+        ScanCheckpoint checkpoint = null != file ? loadCheckpoint(file) : null;
+        boolean resumed = null != checkpoint;
+        if (resumed && !identity.equals(checkpoint.identity())) {
+            throw new IllegalStateException("The scan checkpoint " + file + " belongs to the scan "
+                + checkpoint.identity() + ", not " + identity);
+        }
+        long[] idRange = rangeFinder.get();
+        if (null == checkpoint) {
+            if (null == idRange) {
+                return new ScanResult(0, 0, 0L, false);
+            }
+            checkpoint = ScanCheckpoint.split(identity, idRange[0], idRange[1], options.effectiveRangeCount());
+        } else if (null != idRange) {
+            checkpoint = checkpoint.extend(idRange[0], idRange[1], options.effectiveRangeCount());
+        }
+
+        Run run = new Run(checkpoint, consumer);
+        ForkJoinPool pool = new ForkJoinPool(options.getParallelism(), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicLong threads = new AtomicLong();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool p) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("repo-scan-" + name + "-" + threads.incrementAndGet());
+                return thread;
+            }
+        }, null, false);
+        int skipped = 0;
+        boolean interrupted = false;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < checkpoint.size(); i++) {
+                if (checkpoint.done(i)) {
+                    skipped++;
+                    continue;
+                }
+                int range = i;
+                tasks.add(pool.submit(() -> run.scanRange(range)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    run.fail(new IllegalStateException("Interrupted while scanning " + name, e));
+                    stop(pool);
+                    interrupted = true;
+                    break;
+                } catch (ExecutionException e) {
+                    // the failures are recorded by the run itself
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Throwable failure = run.failure.get();
+        if (null != failure) {
+            // the checkpoint is written through an interruptible channel, restore the interrupt after
+            run.save(true);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new IllegalStateException("Failed to scan " + name, failure);
+        }
+        if (null != file) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete the scan checkpoint {}", file, e);
+            }
+        }
+        return new ScanResult(checkpoint.size(), skipped, run.rows.sum(), resumed);
+    }
+
+    /**
+     * stop the ranges in progress and wait for them to return, so the checkpoint saved after holds their final
+     * positions. A second interrupt gives up the wait
+     */
+    private void stop(ForkJoinPool pool) {
+        pool.shutdownNow();
+        try {
+            while (!pool.awaitTermination(1L, TimeUnit.SECONDS)) {
+                log.info("Waiting for the ranges of {} in progress to stop", name);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Stop waiting for the ranges of {} in progress, the checkpoint may fall behind", name);
+        }
+    }
+
+    private static ScanCheckpoint loadCheckpoint(Path file) {
+        try {
+            return ScanCheckpoint.load(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the scan checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * the state of a scan run
+     */
+    private class Run {
+
+        private final ScanCheckpoint checkpoint;
+
+        private final Consumer<? super List<T>> consumer;
+
+        private final RateLimiter limiter;
+
+        private final LongAdder rows = new LongAdder();
+
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private final AtomicLong lastSaved = new AtomicLong(System.currentTimeMillis());
+
+        Run(ScanCheckpoint checkpoint, Consumer<? super List<T>> consumer) {
+            this.checkpoint = checkpoint;
+            this.consumer = consumer;
+            this.limiter = options.getMaxRowsPerSecond() > 0 ? RateLimiter.create(options.getMaxRowsPerSecond()) : null;
+        }
+
+        void scanRange(int range) {
+            try {
+                int chunkSize = options.getChunkSize();
+                long end = checkpoint.end(range);
+                long position = checkpoint.position(range);
+                while (position < end && !failed.get()) {
+                    List<T> chunk = fetcher.fetch(position, end, chunkSize);
+                    if (!chunk.isEmpty()) {
+                        if (null != limiter) {
+                            limiter.acquire(chunk.size());
+                        }
+                        consumer.accept(chunk);
+                        rows.add(chunk.size());
+                    }
+                    position = chunk.size() < chunkSize ? end : idGetter.applyAsLong(chunk.get(chunk.size() - 1));
+                    checkpoint.advance(range, position);
+                    save(false);
+                }
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        void fail(Throwable e) {
+            failure.compareAndSet(null, e);
+            failed.set(true);
+        }
+
+        /**
+         * write the checkpoint if the interval passed or forced
+         */
+        void save(boolean force) {
+            Path file = options.getCheckpointFile();
+            if (null == file) {
+                return;
+            }
+            long last = lastSaved.get();
+            long now = System.currentTimeMillis();
+            if (!force && (now - last < options.getCheckpointIntervalMillis() || !lastSaved.compareAndSet(last, now))) {
+                return;
+            }
+            try {
+                checkpoint.save(file);
+            } catch (IOException e) {
+                log.warn("Failed to write the scan checkpoint {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.scan;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ranges of an id range scan and the progress of each
+ * <p>
+ * Each range covers the ids after its start up to its end inclusive, the position is the last id the records up
+ * to are consumed. A range is done when the position reaches the end. The ranges are in id order and adjacent.
+ * The checkpoint file is a properties file holds the identity of the scan and a line per range holds the start,
+ * end and position.
+ */
+class ScanCheckpoint {
+
+    /**
+     * the identity of the scan, the table and query the ranges belong to
+     */
+    private final String identity;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final AtomicLongArray positions;
+
+    private ScanCheckpoint(String identity, long[] starts, long[] ends, long[] positions) {
+        this.identity = identity;
+        this.starts = starts;
+        this.ends = ends;
+        this.positions = new AtomicLongArray(positions);
+    }
+
+    /**
+     * split the ids from min to max inclusive into ranges of nearly the same width
+     * @param identity the identity of the scan
+     * @param minId the min id
+     * @param maxId the max id
+     * @param count the count of ranges, reduced to the count of ids if less
+     * @return the ranges none is consumed
+     */
+    static ScanCheckpoint split(String identity, long minId, long maxId, int count) {
+        // the span may overflow for ids across the whole long range, which is not expected of real ids
+        long span = Math.max(1L, maxId - minId + 1L);
+        int n = (int) Math.min(Math.max(1, count), span);
+        long width = span / n;
+        long remainder = span % n;
+        long[] starts = new long[n];
+        long[] ends = new long[n];
+        long start = minId - 1L;
+        for (int i = 0; i < n; i++) {
+            starts[i] = start;
+            ends[i] = i == n - 1 ? maxId : start + width + (i < remainder ? 1L : 0L);
+            start = ends[i];
+        }
+        return new ScanCheckpoint(identity, starts, ends, starts.clone());
+    }
+
+    /**
+     * cover the ids from min to max inclusive found again on resume, the ids below the first range and above the
+     * last one are split into new ranges of nearly the same width
+     * @param minId the min id found now
+     * @param maxId the max id found now
+     * @param count the count of ranges to split each uncovered side into
+     * @return the ranges extended, or this if all the ids are covered
+     */
+    ScanCheckpoint extend(long minId, long maxId, int count) {
+        ScanCheckpoint below = minId <= starts[0] ? split(identity, minId, starts[0], count) : null;
+        ScanCheckpoint above = maxId > ends[size() - 1] ? split(identity, ends[size() - 1] + 1L, maxId, count) : null;
+        if (null == below && null == above) {
+            return this;
+        }
+        ScanCheckpoint[] parts = {below, this, above};
+        int n = 0;
+        for (ScanCheckpoint part : parts) {
+            n += null != part ? part.size() : 0;
+        }
+        long[] newStarts = new long[n];
+        long[] newEnds = new long[n];
+        long[] newPositions = new long[n];
+        int i = 0;
+        for (ScanCheckpoint part : parts) {
+            for (int range = 0; null != part && range < part.size(); range++, i++) {
+                newStarts[i] = part.starts[range];
+                newEnds[i] = part.ends[range];
+                newPositions[i] = part.positions.get(range);
+            }
+        }
+        return new ScanCheckpoint(identity, newStarts, newEnds, newPositions);
+    }
+
+    /**
+     * read the ranges from the checkpoint file
+     * @param file the checkpoint file
+     * @return the ranges, null if the file does not exist
+     * @throws IOException if failed to read or the file is malformed
+     */
+    static ScanCheckpoint load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            int n = Integer.parseInt(properties.getProperty("ranges"));
+            long[] starts = new long[n];
+            long[] ends = new long[n];
+            long[] positions = new long[n];
+            for (int i = 0; i < n; i++) {
+                String[] values = properties.getProperty("range." + i).split(",");
+                starts[i] = Long.parseLong(values[0].trim());
+                ends[i] = Long.parseLong(values[1].trim());
+                positions[i] = Long.parseLong(values[2].trim());
+            }
+            return new ScanCheckpoint(properties.getProperty("scan", ""), starts, ends, positions);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed scan checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * write the ranges to the checkpoint file, replaced atomically
+     * @param file the checkpoint file
+     * @throws IOException if failed to write
+     */
+    synchronized void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("scan", identity);
+        properties.setProperty("ranges", String.valueOf(size()));
+        for (int i = 0; i < size(); i++) {
+            properties.setProperty("range." + i, starts[i] + "," + ends[i] + "," + positions.get(i));
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (null != parent) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, "repo scan checkpoint");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    String identity() {
+        return identity;
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    long end(int range) {
+        return ends[range];
+    }
+
+    long position(int range) {
+        return positions.get(range);
+    }
+
+    boolean done(int range) {
+        return positions.get(range) >= ends[range];
+    }
+
+    /**
+     * mark the records of the range up to the id consumed
+     * @param range the range index
+     * @param position the id
+     */
+    void advance(int range, long position) {
+        positions.set(range, Math.min(position, ends[range]));
+    }
+}
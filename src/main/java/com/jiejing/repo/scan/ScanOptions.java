@@ -0,0 +1,100 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.scan;
+
+import java.nio.file.Path;
+import lombok.Getter;
+
+/**
+ * The options of an id range scan
+ */
+@Getter
+public class ScanOptions {
+
+    /**
+     * the max count of ranges scanned at the same time
+     */
+    private int parallelism = 4;
+
+    /**
+     * the count of ranges the id range is split into, non positive for 4 ranges per thread
+     */
+    private int rangeCount = 0;
+
+    /**
+     * the max count of records fetched per query
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * the max count of records fetched per second in total, non positive for no limit
+     */
+    private double maxRowsPerSecond = 0D;
+
+    /**
+     * the file to keep the progress in, null to scan without checkpoints
+     */
+    private Path checkpointFile;
+
+    /**
+     * the min interval to write the checkpoint
+     */
+    private long checkpointIntervalMillis = 1000L;
+
+    public ScanOptions parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ScanOptions rangeCount(int rangeCount) {
+        this.rangeCount = rangeCount;
+        return this;
+    }
+
+    public ScanOptions chunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public ScanOptions maxRowsPerSecond(double maxRowsPerSecond) {
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        return this;
+    }
+
+    public ScanOptions checkpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        return this;
+    }
+
+    public ScanOptions checkpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        return this;
+    }
+
+    /**
+     * the count of ranges to split into
+     * @return the count
+     */
+    int effectiveRangeCount() {
+        return rangeCount > 0 ? rangeCount : parallelism * 4;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.scan;
+
+import lombok.Getter;
+
+/**
+ * The result of an id range scan
+ */
+@Getter
+public class ScanResult {
+
+    /**
+     * the count of ranges the id range is split into, 0 if no record found
+     */
+    private final int ranges;
+
+    /**
+     * the count of ranges already done before this run, when resumed from a checkpoint
+     */
+    private final int skippedRanges;
+
+    /**
+     * the count of records scanned in this run
+     */
+    private final long rows;
+
+    /**
+     * whether the scan is resumed from a checkpoint
+     */
+    private final boolean resumed;
+
+    public ScanResult(int ranges, int skippedRanges, long rows, boolean resumed) {
+        this.ranges = ranges;
+        this.skippedRanges = skippedRanges;
+        this.rows = rows;
+        this.resumed = resumed;
+    }
+}
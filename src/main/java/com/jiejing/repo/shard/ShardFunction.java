@@ -0,0 +1,42 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.shard;
+
+/**
+ * The function routes an id to the shard holds it
+ *
+ * @param <I> the id type
+ */
+@FunctionalInterface
+public interface ShardFunction<I> {
+
+    /**
+     * the index of the shard holds the id
+     * @param id the id
+     * @param shardCount the count of shards
+     * @return the index in [0, shardCount)
+     */
+    int shardOf(I id, int shardCount);
+
+    /**
+     * route by the hash code of the id
+     * @param <I> the id type
+     * @return the function
+     */
+    static <I> ShardFunction<I> hash() {
+        return (id, shardCount) -> Math.floorMod(id.hashCode(), shardCount);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.shard;
+
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The condition of a scatter-gather find holds the sort and paging applied across shards
+ * <p>
+ * Each shard is asked with a condition of the same filter and sort, from the first record and limited to
+ * offset + limit records, then the shard results are merged under the sort and paged.
+ */
+@Getter
+public class ShardedCond {
+
+    /**
+     * the filter condition understood by the shard repositories
+     */
+    private final Object cond;
+
+    /**
+     * the sort of the results, unsorted to concatenate the shard results
+     */
+    private final Sort sort;
+
+    /**
+     * the count of merged records to skip
+     */
+    private final long offset;
+
+    /**
+     * the max count of records to return, non positive for unlimited
+     */
+    private final long limit;
+
+    public ShardedCond(Object cond, Sort sort, long offset, long limit) {
+        this.cond = cond;
+        this.sort = null != sort ? sort : Sort.unsorted();
+        this.offset = Math.max(offset, 0L);
+        this.limit = limit;
+    }
+
+    /**
+     * the condition to ask each shard with
+     * @return the condition of the same filter and sort from the first record
+     */
+    public ShardedCond forShard() {
+        return new ShardedCond(cond, sort, 0L, limit > 0 ? offset + limit : 0L);
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.shard;
+
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.DiscreteDomain;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jiejing.repo.Repository;
+import com.jiejing.repo.accessor.EntityAccessor;
+import com.jiejing.repo.utils.FutureUtil;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.springframework.data.domain.Sort;
+
+/**
+ * A repository routes the entities by id over multiple shard repositories
+ * <p>
+ * Operations by ids are grouped by shard and run on the shards in parallel. Operations by condition are scattered
+ * to all the shards and gathered. A find requires a {@link ShardedCond}, it asks each shard with the same sort and
+ * offset + limit records, then merges the shard results k-way under the sort and applies the paging. Entities must
+ * hold the id before written to be routed, a service on shards requires an id generator.
+ *
+ * @param <I> the id type
+ * @param <T> the entity type
+ */
+public class ShardedRepository<I, T> implements Repository<I, T>, Closeable {
+
+    private final List<Repository<I, T>> shards;
+
+    private final ShardFunction<I> shardFunction;
+
+    /**
+     * the executor to run on multiple shards in parallel
+     */
+    private final Executor executor;
+
+    /**
+     * the pool created by the repository and shut down on close, null if the executor is given
+     */
+    private final ExecutorService ownedPool;
+
+    /**
+     * the property accessor to compare entities under the sort
+     */
+    private final EntityAccessor<T> accessor;
+
+    /**
+     * route by the hash code of id and run on a pool of a thread per shard owned by the repository, see
+     * {@link #close()}. The calls exceeding the pool run on the caller
+     * @param entityClass the entity class
+     * @param shards the shard repositories
+     */
+    public ShardedRepository(Class<T> entityClass, List<? extends Repository<I, T>> shards) {
+        this(entityClass, shards, ShardFunction.hash(), null);
+    }
+
+    /**
+     * @param entityClass the entity class
+     * @param shards the shard repositories
+     * @param shardFunction the function routes an id to the shard
+     * @param executor the executor to run on multiple shards in parallel, null for a pool owned by the repository
+     */
+    public ShardedRepository(Class<T> entityClass, List<? extends Repository<I, T>> shards,
+        ShardFunction<I> shardFunction, Executor executor) {
+        if (null == shards || shards.isEmpty()) {
+            throw new IllegalArgumentException("shards are empty");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.shardFunction = shardFunction;
+        this.ownedPool = null != executor ? null : newPool(entityClass, shards.size());
+        this.executor = null != executor ? executor : ownedPool;
+        this.accessor = EntityAccessor.of(entityClass);
+    }
+
+    /**
+     * a daemon thread per shard, idle threads time out and the calls exceeding the pool run on the caller, so the
+     * calls still run on the caller after the pool is shut down
+     */
+    private static ExecutorService newPool(Class<?> entityClass, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("repo-shard-"
+            + entityClass.getSimpleName() + "-%d").setDaemon(true).build(), (task, rejectedBy) -> task.run());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * shut down the pool owned by the repository, the given executor is left to its owner
+     */
+    @Override
+    public void close() {
+        if (null != ownedPool) {
+            ownedPool.shutdown();
+        }
+    }
+
+    /**
+     * the shard repositories
+     * @return the shards in index order
+     */
+    public List<Repository<I, T>> shards() {
+        return shards;
+    }
+
+    /**
+     * the shard repository holds the id
+     * @param id the id
+     * @return the shard
+     */
+    public Repository<I, T> shardOf(I id) {
+        return shards.get(indexOf(id));
+    }
+
+    private int indexOf(I id) {
+        if (null == id) {
+            throw new IllegalArgumentException("id is required to route to a shard");
+        }
+        int index = shardFunction.shardOf(id, shards.size());
+        if (index < 0 || index >= shards.size()) {
+            throw new IllegalStateException("id " + id + " is routed to the absent shard " + index);
+        }
+        return index;
+    }
+
+    /**
+     * group the items by the shards of their ids in shard order
+     */
+    private <X> Map<Integer, List<X>> groupByShard(Iterable<X> items, Function<X, I> idGetter) {
+        Map<Integer, List<X>> groups = Maps.newTreeMap();
+        for (X item : items) {
+            groups.computeIfAbsent(indexOf(idGetter.apply(item)), index -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+
+    /**
+     * run the call on the shards of the groups, in parallel if more than one shard
+     * @return the results in shard order
+     */
+    private <X, R> List<R> scatter(Map<Integer, List<X>> groups, BiFunction<Repository<I, T>, List<X>, R> call) {
+        if (groups.size() == 1) {
+            Map.Entry<Integer, List<X>> group = groups.entrySet().iterator().next();
+            return Collections.singletonList(call.apply(shards.get(group.getKey()), group.getValue()));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(groups.size());
+        groups.forEach((index, group) -> futures.add(
+            CompletableFuture.supplyAsync(() -> call.apply(shards.get(index), group), executor)));
+        return join(futures);
+    }
+
+    /**
+     * run the call on all the shards in parallel
+     * @return the results in shard order
+     */
+    private <R> List<R> scatterAll(Function<Repository<I, T>, R> call) {
+        if (shards.size() == 1) {
+            return Collections.singletonList(call.apply(shards.get(0)));
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(shards.size());
+        for (Repository<I, T> shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+        }
+        return join(futures);
+    }
+
+    /**
+     * wait for all the futures, rethrow the first failure after all completed
+     */
+    private static <R> List<R> join(List<CompletableFuture<R>> futures) {
+        List<R> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (CompletableFuture<R> future : futures) {
+            try {
+                results.add(FutureUtil.join(future));
+            } catch (RuntimeException e) {
+                if (null == failure) {
+                    failure = e;
+                }
+            }
+        }
+        if (null != failure) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static Object unwrap(Object cond) {
+        return cond instanceof ShardedCond ? ((ShardedCond) cond).getCond() : cond;
+    }
+
+    @Override
+    public I getId(T entity) {
+        return shards.get(0).getId(entity);
+    }
+
+    @Override
+    public void setId(T entity, I id) {
+        shards.get(0).setId(entity, id);
+    }
+
+    @Override
+    public <S extends T> S insert(S entity) {
+        return shardOf(getId(entity)).insert(entity);
+    }
+
+    /**
+     * insert the entities on their shards, the inserted entities are returned in the given order
+     */
+    @Override
+    public <S extends T> Iterable<S> insertAll(Iterable<S> entities) {
+        List<S> entityList = Lists.newArrayList(entities);
+        Map<Integer, List<Integer>> positions = groupByShard(
+            ContiguousSet.create(Range.closedOpen(0, entityList.size()), DiscreteDomain.integers()),
+            position -> getId(entityList.get(position)));
+        List<Iterable<S>> inserted = scatter(positions,
+            (shard, group) -> shard.insertAll(Lists.transform(group, entityList::get)));
+
+        List<S> result = new ArrayList<>(entityList);
+        Iterator<Iterable<S>> shardResults = inserted.iterator();
+        for (List<Integer> group : positions.values()) {
+            Iterator<Integer> position = group.iterator();
+            for (S entity : shardResults.next()) {
+                if (!position.hasNext()) {
+                    throw new IllegalStateException("The shard returns more entities than inserted");
+                }
+                result.set(position.next(), entity);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T updateById(T entity) {
+        return shardOf(getId(entity)).updateById(entity);
+    }
+
+    @Override
+    public Iterable<T> updateByIds(Iterable<I> ids, T entity) {
+        return Lists.newArrayList(Iterables.concat(
+            scatter(groupByShard(ids, Function.identity()), (shard, group) -> shard.updateByIds(group, entity))));
+    }
+
+    @Override
+    public Optional<T> findById(I id) {
+        return shardOf(id).findById(id);
+    }
+
+    @Override
+    public Iterable<T> findAllById(Iterable<I> ids) {
+        Map<I, T> found = Maps.newHashMap();
+        for (Iterable<T> entities : scatter(groupByShard(ids, Function.identity()), Repository::findAllById)) {
+            for (T entity : entities) {
+                found.put(getId(entity), entity);
+            }
+        }
+        List<T> result = new ArrayList<>(found.size());
+        for (I id : new LinkedHashSet<>(Lists.newArrayList(ids))) {
+            T entity = found.get(id);
+            if (null != entity) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return scatterAll(Repository::count).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public boolean dropById(I id) {
+        return shardOf(id).dropById(id);
+    }
+
+    @Override
+    public Iterable<I> dropByIds(Iterable<I> ids) {
+        return Lists.newArrayList(Iterables.concat(
+            scatter(groupByShard(ids, Function.identity()), Repository::dropByIds)));
+    }
+
+    @Override
+    public long dropByCond(Object cond) {
+        Object shardCond = unwrap(cond);
+        return scatterAll(shard -> shard.dropByCond(shardCond)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long updateByCond(Object cond, T entity) {
+        Object shardCond = unwrap(cond);
+        return scatterAll(shard -> shard.updateByCond(shardCond, entity)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public Iterable<T> findByCond(Object cond) {
+        ShardedCond shardedCond = shardedCond(cond);
+        ShardedCond shardCond = shardedCond.forShard();
+        return merge(scatterAll(shard -> shard.findByCond(shardCond)), shardedCond);
+    }
+
+    /**
+     * find with only the given fields, the sort properties of a {@link ShardedCond} are also asked from the shards
+     * to merge the shard results
+     */
+    @Override
+    public Iterable<T> findByCond(Object cond, Set<String> fields) {
+        ShardedCond shardedCond = shardedCond(cond);
+        ShardedCond shardCond = shardedCond.forShard();
+        Set<String> shardFields = new LinkedHashSet<>(fields);
+        shardedCond.getSort().forEach(order -> shardFields.add(order.getProperty()));
+        return merge(scatterAll(shard -> shard.findByCond(shardCond, shardFields)), shardedCond);
+    }
+
+    @Override
+    public long countByCond(Object cond) {
+        Object shardCond = unwrap(cond);
+        return scatterAll(shard -> shard.countByCond(shardCond)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * the condition of a find across the shards, the sort and paging of any other condition would be applied per
+     * shard and broken by the concatenation of the shard results
+     * @throws IllegalArgumentException if not a {@link ShardedCond}
+     */
+    private static ShardedCond shardedCond(Object cond) {
+        if (!(cond instanceof ShardedCond)) {
+            throw new IllegalArgumentException("Find on shards requires a ShardedCond to sort and page across the "
+                + "shards, but got " + (null != cond ? cond.getClass().getName() : null));
+        }
+        return (ShardedCond) cond;
+    }
+
+    /**
+     * merge the sorted shard results under the sort and apply the paging
+     */
+    private List<T> merge(List<Iterable<T>> results, ShardedCond cond) {
+        Comparator<T> comparator = comparatorOf(cond.getSort());
+        Iterator<T> merged = null == comparator
+            ? Iterables.concat(results).iterator()
+            : Iterators.mergeSorted(Lists.transform(results, Iterable::iterator), comparator);
+
+        for (long skipped = 0L; skipped < cond.getOffset() && merged.hasNext(); skipped++) {
+            merged.next();
+        }
+        long limit = cond.getLimit() > 0 ? cond.getLimit() : Long.MAX_VALUE;
+        List<T> paged = new ArrayList<>();
+        while (paged.size() < limit && merged.hasNext()) {
+            paged.add(merged.next());
+        }
+        return paged;
+    }
+
+    /**
+     * the comparator of entities under the sort
+     * @return the comparator, null if unsorted
+     */
+    private Comparator<T> comparatorOf(Sort sort) {
+        Comparator<T> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<T> byOrder = (a, b) -> compare(
+                accessor.getProperty(a, order.getProperty()), accessor.getProperty(b, order.getProperty()), order);
+            comparator = null == comparator ? byOrder : comparator.thenComparing(byOrder);
+        }
+        return comparator;
+    }
+
+    /**
+     * compare the property values under the order, nulls are the smallest values unless specified
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b, Sort.Order order) {
+        if (a == b) {
+            return 0;
+        }
+        if (null == a || null == b) {
+            boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST
+                || (order.getNullHandling() == Sort.NullHandling.NATIVE && order.isAscending());
+            return (null == a) == nullsFirst ? -1 : 1;
+        }
+        int result = order.isIgnoreCase() && a instanceof String && b instanceof String
+            ? ((String) a).compareToIgnoreCase((String) b)
+            : ((Comparable<Object>) a).compareTo(b);
+        return order.isAscending() ? result : -result;
+    }
+}
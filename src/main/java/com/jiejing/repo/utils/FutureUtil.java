@@ -0,0 +1,29 @@
+package com.jiejing.repo.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Helpers to wait for futures
+ */
+public class FutureUtil {
+  /**
+   * Wait for the future and rethrow the runtime exception it completed with
+   * @param future the future
+   * @param <T> the value type
+   * @return the value of the future
+   */
+  public static final <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
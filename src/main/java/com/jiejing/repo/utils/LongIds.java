@@ -0,0 +1,86 @@
+/*
+ * This file is part of repo-core, which is free library: you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Foobar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Foobar.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.jiejing.repo.utils;
+
+import com.google.common.primitives.Longs;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Conversions between primitive id arrays and the id sets of the generic repository interface
+ * <p>
+ * The lists returned by {@link #asList(long[])} are backed by the arrays, and {@link #toArray(Iterable)} copies them
+ * and their sub lists back without boxing, so the ids may cross the generic interface and return to a primitive one
+ * without allocating an object per id.
+ */
+public final class LongIds {
+
+    private static final long[] EMPTY = new long[0];
+
+    private LongIds() {
+    }
+
+    /**
+     * view the ids as a fixed-size list, the elements are boxed on access only
+     * @param ids the ids
+     * @return the list backed by the ids
+     */
+    public static List<Long> asList(long... ids) {
+        return Longs.asList(ids);
+    }
+
+    /**
+     * copy the ids into an array
+     * @param ids the ids, must not hold null
+     * @return the id array
+     * @throws NullPointerException if any id is null
+     */
+    public static long[] toArray(Iterable<Long> ids) {
+        if (ids instanceof Collection) {
+            return Longs.toArray((Collection<Long>) ids);
+        }
+        long[] array = new long[16];
+        int size = 0;
+        for (Long id : ids) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, size << 1);
+            }
+            array[size++] = id;
+        }
+        return size == 0 ? EMPTY : Arrays.copyOf(array, size);
+    }
+
+    /**
+     * collect the ids of the entities
+     * @param entities the entities
+     * @param idGetter the id getter
+     * @param <T> the entity type
+     * @return the id array in the order of the entities
+     */
+    public static <T> long[] idsOf(Iterable<T> entities, ToLongFunction<T> idGetter) {
+        long[] array = new long[entities instanceof Collection ? ((Collection<?>) entities).size() : 16];
+        int size = 0;
+        for (T entity : entities) {
+            if (size == array.length) {
+                array = Arrays.copyOf(array, Math.max(16, size << 1));
+            }
+            array[size++] = idGetter.applyAsLong(entity);
+        }
+        return size == array.length ? array : Arrays.copyOf(array, size);
+    }
+}
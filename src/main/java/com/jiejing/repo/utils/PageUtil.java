@@ -21,4 +21,15 @@ public class PageUtil {
   public static final Pageable toPageable(int pageNo, int pageSize, Sort sort, boolean oneBasedPage) {
     return PageRequest.of(Math.max(pageNo - (oneBasedPage ? 1 : 0), 0), pageSize, sort);
   }
+
+  /**
+   * Convert to SeekPageable
+   * @param token the continuation token of the previous page, null for the first page
+   * @param pageSize the page size
+   * @param sort the sort object
+   * @return the converted SeekPageable object
+   */
+  public static final SeekPageable toSeekPageable(String token, int pageSize, Sort sort) {
+    return new SeekPageable(token, pageSize, sort);
+  }
 }
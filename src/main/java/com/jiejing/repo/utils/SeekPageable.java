@@ -0,0 +1,48 @@
+package com.jiejing.repo.utils;
+
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The seek page param, locates the page by the continuation token instead of the offset
+ */
+@Getter
+public class SeekPageable {
+
+  /**
+   * the continuation token of the previous page, null for the first page
+   */
+  private final String token;
+
+  /**
+   * the page size
+   */
+  private final int pageSize;
+
+  /**
+   * the sort of the records, the id is always the last sort key
+   */
+  private final Sort sort;
+
+  public SeekPageable(String token, int pageSize, Sort sort) {
+    if (pageSize <= 0) {
+      throw new IllegalArgumentException("page size must be positive");
+    }
+    this.token = token;
+    this.pageSize = pageSize;
+    this.sort = null != sort ? sort : Sort.unsorted();
+  }
+
+  /**
+   * the decoded continuation token
+   * @return the decoded token, null for the first page
+   * @throws IllegalArgumentException if the token is malformed or issued under another sort
+   */
+  public SeekToken decodeToken() {
+    SeekToken decoded = SeekToken.decode(token);
+    if (null != decoded) {
+      decoded.checkSort(sort);
+    }
+    return decoded;
+  }
+}
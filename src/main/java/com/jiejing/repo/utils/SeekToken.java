@@ -0,0 +1,254 @@
+package com.jiejing.repo.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+/**
+ * The continuation token of a seek page, holds the fingerprint of the sort, the sort key values and the id of the
+ * last record
+ * <p>
+ * Values are written with a type tag instead of java serialization, so decoding a token from a client is safe.
+ * Supported value types are null, String, boxed primitives, BigDecimal, BigInteger, Date, Timestamp (with the
+ * nanos), Instant, LocalDate, LocalDateTime and enums (decoded as their names).
+ */
+@Getter
+public class SeekToken {
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte LONG = 2;
+  private static final byte INT = 3;
+  private static final byte SHORT = 4;
+  private static final byte BYTE = 5;
+  private static final byte DOUBLE = 6;
+  private static final byte FLOAT = 7;
+  private static final byte BOOLEAN = 8;
+  private static final byte DECIMAL = 9;
+  private static final byte BIG_INTEGER = 10;
+  private static final byte DATE = 11;
+  private static final byte INSTANT = 12;
+  private static final byte LOCAL_DATE = 13;
+  private static final byte LOCAL_DATE_TIME = 14;
+  private static final byte CHAR = 15;
+  private static final byte TIMESTAMP = 16;
+
+  /**
+   * the fingerprint of the sort the token is issued under, see {@link #fingerprint(Sort)}
+   */
+  private final int sortFingerprint;
+
+  /**
+   * the sort key values of the last record, in the order of the sort
+   */
+  private final Object[] values;
+
+  /**
+   * the id of the last record
+   */
+  private final Object id;
+
+  /**
+   * @param sort the sort of the page
+   * @param values the sort key values of the last record, in the order of the sort
+   * @param id the id of the last record
+   */
+  public SeekToken(Sort sort, Object[] values, Object id) {
+    this(fingerprint(sort), values, id);
+  }
+
+  private SeekToken(int sortFingerprint, Object[] values, Object id) {
+    this.sortFingerprint = sortFingerprint;
+    this.values = values;
+    this.id = id;
+  }
+
+  /**
+   * the fingerprint of the sort, stable across processes
+   * @param sort the sort
+   * @return the fingerprint of the properties, directions, case and null handling of the orders
+   */
+  public static int fingerprint(Sort sort) {
+    int fingerprint = 1;
+    for (Sort.Order order : sort) {
+      fingerprint = 31 * fingerprint + order.getProperty().hashCode();
+      fingerprint = 31 * fingerprint + order.getDirection().name().hashCode();
+      fingerprint = 31 * fingerprint + (order.isIgnoreCase() ? 1 : 0);
+      fingerprint = 31 * fingerprint + order.getNullHandling().name().hashCode();
+    }
+    return fingerprint;
+  }
+
+  /**
+   * check the token is issued under the sort
+   * @param sort the sort of the page asked
+   * @throws IllegalArgumentException if the token is issued under another sort
+   */
+  public void checkSort(Sort sort) {
+    if (sortFingerprint != fingerprint(sort) || values.length != sort.stream().count()) {
+      throw new IllegalArgumentException("The seek token is issued under another sort than " + sort);
+    }
+  }
+
+  /**
+   * Encode the token as an url safe string
+   * @return the encoded token
+   */
+  public String encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(sortFingerprint);
+      out.writeShort(values.length);
+      for (Object value : values) {
+        writeValue(out, value);
+      }
+      writeValue(out, id);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+  }
+
+  /**
+   * Decode the token
+   * @param token the encoded token
+   * @return the decoded token, null if the token is null or empty
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static SeekToken decode(String token) {
+    if (null == token || token.isEmpty()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+      int sortFingerprint = in.readInt();
+      Object[] values = new Object[in.readUnsignedShort()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = readValue(in);
+      }
+      Object id = readValue(in);
+      if (in.read() != -1) {
+        throw new IllegalArgumentException("Malformed seek token");
+      }
+      return new SeekToken(sortFingerprint, values, id);
+    } catch (IOException | RuntimeException e) {
+      throw new IllegalArgumentException("Malformed seek token", e);
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (null == value) {
+      out.writeByte(NULL);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      out.writeUTF((String) value);
+    } else if (value instanceof Enum) {
+      out.writeByte(STRING);
+      out.writeUTF(((Enum) value).name());
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Character) {
+      out.writeByte(CHAR);
+      out.writeChar((Character) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      out.writeUTF(value.toString());
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INTEGER);
+      out.writeUTF(value.toString());
+    } else if (value instanceof Timestamp) {
+      // the millis and the nanos overlap in the millisecond, the nanos are written in full
+      out.writeByte(TIMESTAMP);
+      out.writeLong(((Timestamp) value).getTime());
+      out.writeInt(((Timestamp) value).getNanos());
+    } else if (value instanceof Date) {
+      out.writeByte(DATE);
+      out.writeLong(((Date) value).getTime());
+    } else if (value instanceof Instant) {
+      out.writeByte(INSTANT);
+      out.writeUTF(value.toString());
+    } else if (value instanceof LocalDate) {
+      out.writeByte(LOCAL_DATE);
+      out.writeUTF(value.toString());
+    } else if (value instanceof LocalDateTime) {
+      out.writeByte(LOCAL_DATE_TIME);
+      out.writeUTF(value.toString());
+    } else {
+      throw new IllegalArgumentException("Unsupported seek key type " + value.getClass().getName());
+    }
+  }
+
+  private static Object readValue(DataInputStream in) throws IOException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return in.readUTF();
+      case LONG:
+        return in.readLong();
+      case INT:
+        return in.readInt();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case BOOLEAN:
+        return in.readBoolean();
+      case CHAR:
+        return in.readChar();
+      case DECIMAL:
+        return new BigDecimal(in.readUTF());
+      case BIG_INTEGER:
+        return new BigInteger(in.readUTF());
+      case DATE:
+        return new Date(in.readLong());
+      case TIMESTAMP:
+        Timestamp timestamp = new Timestamp(in.readLong());
+        timestamp.setNanos(in.readInt());
+        return timestamp;
+      case INSTANT:
+        return Instant.parse(in.readUTF());
+      case LOCAL_DATE:
+        return LocalDate.parse(in.readUTF());
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.parse(in.readUTF());
+      default:
+        throw new IllegalArgumentException("Unknown seek key tag " + tag);
+    }
+  }
+}
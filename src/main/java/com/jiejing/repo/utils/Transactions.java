@@ -0,0 +1,40 @@
+package com.jiejing.repo.utils;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Helpers to run tasks after the spring transaction of the caller if spring-tx is on the classpath
+ */
+public class Transactions {
+  /**
+   * if spring-tx is on the classpath, the synchronization classes are only touched if so
+   */
+  private static final boolean PRESENT = ClassUtils.isPresent(
+      "org.springframework.transaction.support.TransactionSynchronizationManager", Transactions.class.getClassLoader());
+
+  /**
+   * run the task after the transaction of the current thread completes, committed or rolled back
+   * @param task the task
+   * @return false if the current thread is not in a transaction with the synchronization active, the task is not run
+   */
+  public static boolean afterCompletion(Runnable task) {
+    return PRESENT && Synchronizations.afterCompletion(task);
+  }
+
+  private static class Synchronizations {
+    static boolean afterCompletion(Runnable task) {
+      if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+        return false;
+      }
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+        @Override
+        public void afterCompletion(int status) {
+          task.run();
+        }
+      });
+      return true;
+    }
+  }
+}
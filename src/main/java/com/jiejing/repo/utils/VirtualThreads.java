@@ -0,0 +1,33 @@
+package com.jiejing.repo.utils;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Helpers to run tasks on virtual threads if the runtime supports them
+ */
+public class VirtualThreads {
+  /**
+   * the shared executor starts a virtual thread per task, null if not supported
+   */
+  private static final Executor EXECUTOR = newExecutor();
+
+  /**
+   * the executor starts a virtual thread per task
+   * @return the executor or {@literal Optional#empty()} if the runtime does not support virtual threads
+   */
+  public static Optional<Executor> executor() {
+    return Optional.ofNullable(EXECUTOR);
+  }
+
+  private static Executor newExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (Executor) factory.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}